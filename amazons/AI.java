@@ -1,7 +1,10 @@
 package amazons;
 
-import java.util.Iterator;
+import java.util.ArrayList;
+import java.util.List;
+
 import static amazons.Piece.*;
+import static amazons.Utils.error;
 
 /** A Player that automatically generates moves.
  *  @author Ethan Yim
@@ -29,42 +32,273 @@ class AI extends Player {
     private static final int SCORE_MULTIPLIER = 100000;
     /** Up to this many moves, use a certain type of heuristic. */
     private static final int USE_UP_TO = 30;
+    /** Try to prove a win once fewer than this many empty squares are
+     *  reachable, unless the amazons.proof.empties property says
+     *  otherwise. */
+    static final int PROOF_EMPTIES = 24;
+    /** System properties overriding PROOF_EMPTIES and the memory budget
+     *  (in megabytes) and node limit of the proof search. */
+    static final String PROOF_EMPTIES_PROPERTY = "amazons.proof.empties",
+        PROOF_MEMORY_PROPERTY = "amazons.proof.memory",
+        PROOF_NODES_PROPERTY = "amazons.proof.nodes";
+    /** The default phases of the beam search, in the form described for
+     *  BEAM_PROPERTY. */
+    static final String DEFAULT_BEAM = "12:16:2,30:24:2";
+    /** Use the beam only while the side to move has more than this many
+     *  moves to consider, unless the amazons.beam.branching property
+     *  says otherwise. */
+    static final int BEAM_BRANCHING = 200;
+    /** System properties overriding DEFAULT_BEAM and BEAM_BRANCHING.  The
+     *  beam is a comma-separated list of phases PLIES:WIDTH:DEPTH.  While
+     *  fewer than PLIES moves have been made (in the first phase for
+     *  which that is true), the WIDTH moves that score best on a quick
+     *  territory count are searched to DEPTH, and the others are not
+     *  searched at all.  An empty list turns the beam off. */
+    static final String BEAM_PROPERTY = "amazons.beam",
+        BEAM_BRANCHING_PROPERTY = "amazons.beam.branching";
+    /** System property that, if "true", has the AI report the statistics
+     *  of its search after each move. */
+    static final String STATS_PROPERTY = "amazons.stats";
 
     /** A new AI with no piece or controller (intended to produce
-     *  a template). */
+     *  a template), using the beam given by the amazons.beam property. */
     AI() {
-        this(null, null);
+        this(System.getProperty(BEAM_PROPERTY, DEFAULT_BEAM));
+    }
+
+    /** A new AI with no piece or controller (intended to produce a
+     *  template), using the beam phases BEAM, in the form described for
+     *  BEAM_PROPERTY. */
+    AI(String beam) {
+        this(null, null, parseBeam(beam));
     }
 
-    /** A new AI playing PIECE under control of CONTROLLER. */
+    /** A new AI playing PIECE under control of CONTROLLER, using the
+     *  beam given by the amazons.beam property. */
     AI(Piece piece, Controller controller) {
+        this(piece, controller,
+             parseBeam(System.getProperty(BEAM_PROPERTY, DEFAULT_BEAM)));
+    }
+
+    /** A new AI playing PIECE under control of CONTROLLER, using the
+     *  beam phases BEAM, each {PLIES, WIDTH, DEPTH}. */
+    private AI(Piece piece, Controller controller, int[][] beam) {
         super(piece, controller);
+        _beam = beam;
     }
 
     @Override
     Player create(Piece piece, Controller controller) {
-        return new AI(piece, controller);
+        return new AI(piece, controller, _beam);
+    }
+
+    /** Return the beam phases described by SPEC, in the form described
+     *  for BEAM_PROPERTY, each as {PLIES, WIDTH, DEPTH}. */
+    static int[][] parseBeam(String spec) {
+        if (spec.isBlank()) {
+            return new int[0][];
+        }
+        String[] phases = spec.split(",");
+        int[][] result = new int[phases.length][];
+        for (int k = 0; k < phases.length; k += 1) {
+            String[] fields = phases[k].trim().split(":");
+            if (fields.length != 3) {
+                throw error("bad beam phase: %s", phases[k]);
+            }
+            result[k] = new int[3];
+            for (int f = 0; f < 3; f += 1) {
+                try {
+                    result[k][f] = Integer.parseInt(fields[f]);
+                } catch (NumberFormatException excp) {
+                    throw error("bad beam phase: %s", phases[k]);
+                }
+                if (result[k][f] <= 0) {
+                    throw error("bad beam phase: %s", phases[k]);
+                }
+            }
+        }
+        return result;
     }
 
     @Override
     String myMove() {
         Move move = findMove();
         _controller.reportMove(move);
+        if (Boolean.getBoolean(STATS_PROPERTY)) {
+            _controller.reportNote("%s: %s", _myPiece.toName(), _stats);
+        }
+        if (_telemetry != null) {
+            Board b = board();
+            _telemetry.recordMove(_myPiece, move, b.numMoves() + 1,
+                                  b.legalMoveStream().count(), _stats);
+        }
         return move.toString();
     }
 
+    @Override
+    SearchStats stats() {
+        return _stats;
+    }
+
     /** Return a move for me from the current position, assuming there
-     *  is a move. */
+     *  is a move.  Early on, a move from the opening book, or failing
+     *  that the move that won most often in the position database, is
+     *  played without search if there is one.  Once few squares are left, a
+     *  move that the proof search shows to win is played without
+     *  further search. */
     private Move findMove() {
         Board b = new Board(board());
+        _stats.start(_solver.hits());
+        if (b.numMoves() < _book.plies()) {
+            Move move = _book.choose(b, _controller::randInt);
+            if (move != null) {
+                _stats.finish(SearchStats.Source.BOOK, 0, 0, _solver.hits());
+                return move;
+            }
+        }
+        if (b.numMoves() < _positions.plies()) {
+            Move move =
+                _positions.best(b, PositionDatabase.DEFAULT_MIN_GAMES);
+            if (move != null) {
+                _stats.finish(SearchStats.Source.POSITIONS, 0, 0,
+                              _solver.hits());
+                return move;
+            }
+        }
+        if (!b.hasContestedRegion()) {
+            Move move = fillMove(b);
+            if (move != null) {
+                _stats.finish(SearchStats.Source.FILL, 0, 0, _solver.hits());
+                return move;
+            }
+        } else if (ProofSearch.reachable(b) < Integer.getInteger(
+                       PROOF_EMPTIES_PROPERTY, PROOF_EMPTIES)) {
+            Move move = prover().prove(b);
+            if (move != null) {
+                _stats.finish(SearchStats.Source.PROOF, 0, 0,
+                              _solver.hits());
+                return move;
+            }
+        }
+        int depth = maxDepth(b);
+        int[] phase = beamPhase(b);
+        if (phase != null) {
+            return search(b, phase[2], phase[1]);
+        }
+        return search(b, depth, 0);
+    }
+
+    /** Return the move for me found by a full-width search of BOARD,
+     *  which is unchanged, to DEPTH, without consulting the opening book
+     *  or the proof search.  For benchmarks. */
+    Move searchMove(Board board, int depth) {
+        _stats.start(_solver.hits());
+        return search(new Board(board), depth, 0);
+    }
+
+    /** Return the move for me found by a search of BOARD to DEPTH in
+     *  which only the best WIDTH moves at the top level (all, if WIDTH
+     *  is 0) are searched, and finish the statistics of the move. */
+    private Move search(Board board, int depth, int width) {
+        EngineEvents.Search event = new EngineEvents.Search();
+        event.begin();
+        _beamWidth = width;
+        int score;
         if (_myPiece == WHITE) {
-            findMove(b, maxDepth(b), true, 1, -INFTY, INFTY);
+            score = findMove(board, depth, true, 1, -INFTY, INFTY);
         } else {
-            findMove(b, maxDepth(b), true, -1, -INFTY, INFTY);
+            score = findMove(board, depth, true, -1, -INFTY, INFTY);
+        }
+        _stats.finish(SearchStats.Source.SEARCH, depth, score,
+                      _solver.hits());
+        event.end();
+        if (event.shouldCommit()) {
+            event.engine = "alphabeta";
+            event.ply = board.numMoves();
+            event.depth = depth;
+            event.nodes = _stats.nodes();
+            event.move = String.valueOf(_lastFoundMove);
+            event.commit();
         }
         return _lastFoundMove;
     }
 
+    /** Return the beam phase, {PLIES, WIDTH, DEPTH}, that applies to
+     *  BOARD, or null if the beam is not to be used. */
+    private int[] beamPhase(Board board) {
+        for (int[] phase : _beam) {
+            if (board.numMoves() < phase[0]) {
+                int branching = Integer.getInteger(BEAM_BRANCHING_PROPERTY,
+                                                   BEAM_BRANCHING);
+                return candidateMoves(board).size() > branching
+                    ? phase : null;
+            }
+        }
+        return null;
+    }
+
+    /** Return a move for the side to move on BOARD, on which no region is
+     *  contested, that keeps as many of its remaining moves as possible,
+     *  or null if it has none. */
+    private Move fillMove(Board board) {
+        for (Region region : board.regions()) {
+            if (region.owner() == board.turn()) {
+                Move move = _solver.bestMove(board, region);
+                if (move != null) {
+                    return move;
+                }
+            }
+        }
+        return null;
+    }
+
+    /** Return my proof search, creating it on first use, since its table
+     *  is large. */
+    private ProofSearch prover() {
+        if (_prover == null) {
+            long memory = (long) Integer.getInteger(
+                PROOF_MEMORY_PROPERTY, ProofSearch.DEFAULT_MEMORY >> 20) << 20;
+            _prover = new ProofSearch(memory,
+                                      Integer.getInteger(
+                                          PROOF_NODES_PROPERTY,
+                                          ProofSearch.DEFAULT_NODE_LIMIT),
+                                      RegionTablebase.standard());
+        }
+        return _prover;
+    }
+
+    /** Moves for the opening. */
+    private final OpeningBook _book = OpeningBook.standard();
+
+    /** Statistics of the positions of recorded games. */
+    private final PositionDatabase _positions = PositionDatabase.standard();
+
+    /** The phases of the beam search, each {PLIES, WIDTH, DEPTH}. */
+    private final int[][] _beam;
+
+    /** The number of moves searched at the top level of the current
+     *  search, or 0 if all of them are. */
+    private int _beamWidth;
+
+    /** Proof search for late positions, or null if not yet needed. */
+    private ProofSearch _prover;
+
+    /** Distance maps for scoring moves for the beam. */
+    private final DistanceMap _distances = DistanceMap.create();
+
+    /** Region-by-region estimate of the final margin. */
+    private final Evaluator _evaluator =
+        new Evaluator(RegionTablebase.standard());
+
+    /** Solver for the moves left in sealed regions. */
+    private final RegionSolver _solver = _evaluator.solver();
+
+    /** Statistics of the search for my last move. */
+    private final SearchStats _stats = new SearchStats();
+
+    /** Where my moves are logged, or null. */
+    private final Telemetry _telemetry = Telemetry.standard();
+
     /** The move found by the last call to one of the ...FindMove methods
      *  below. */
     private Move _lastFoundMove;
@@ -74,10 +308,13 @@ class AI extends Player {
      *  should have maximal value or have value > BETA if SENSE==1,
      *  and minimal value or value < ALPHA if SENSE==-1. Searches up to
      *  DEPTH levels.  Searching at level 0 simply returns a static estimate
-     *  of the board value and does not set _lastMoveFound. */
+     *  of the board value and does not set _lastMoveFound.  At the top
+     *  level, only the moves given by rootMoves are searched. */
     private int findMove(Board board, int depth, boolean saveMove, int sense,
                          int alpha, int beta) {
+        _stats.countNode();
         if (depth == 0 || board.winner() != EMPTY) {
+            _stats.countLeaf();
             return staticScore(board);
         }
         int score;
@@ -86,14 +323,32 @@ class AI extends Player {
         } else {
             score = INFTY;
         }
+        if (!saveMove && !board.hasContestedRegion()) {
+            _stats.countLeaf();
+            return staticScore(board);
+        }
         boolean endGame = true;
-        Iterator<Move> m = board.legalMoves(myPiece());
-        while (m.hasNext()) {
-            Move move = m.next();
+        int tried = 0;
+        for (Move move : saveMove ? rootMoves(board)
+                 : candidateMoves(board)) {
             Board newBoard = new Board(board);
             newBoard.makeMove(move);
+            tried += 1;
+            EngineEvents.RootMove event = null;
+            long nodes = _stats.nodes();
+            if (saveMove) {
+                event = new EngineEvents.RootMove();
+                event.begin();
+            }
             int value = findMove(newBoard, depth - 1,
                     false, -sense, alpha, beta);
+            if (event != null && event.shouldCommit()) {
+                event.move = move.toString();
+                event.depth = depth - 1;
+                event.nodes = _stats.nodes() - nodes;
+                event.value = value;
+                event.commit();
+            }
             if (sense == 1) {
                 if (value >= score) {
                     score = value;
@@ -117,15 +372,99 @@ class AI extends Player {
                 break;
             }
             if (alpha >= beta) {
+                _stats.countCutoff(tried);
                 break;
             }
         }
         return score;
     }
 
+    /** Return the moves to search for the side to move on BOARD.  Moves
+     *  inside sealed regions cannot affect the opponent, and the value of
+     *  those regions is already accounted for by staticScore, so while
+     *  any region is contested only the moves of queens in contested
+     *  regions are considered. */
+    private List<Move> candidateMoves(Board board) {
+        EngineEvents.MoveGeneration event =
+            new EngineEvents.MoveGeneration();
+        event.begin();
+        Piece side = board.turn();
+        List<Move> result = new ArrayList<>();
+        for (Region region : board.regions()) {
+            if (region.contested()) {
+                board.legalMoves(side, region).forEachRemaining(result::add);
+            }
+        }
+        if (result.isEmpty()) {
+            board.legalMoves(side).forEachRemaining(result::add);
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.ply = board.numMoves();
+            event.moves = result.size();
+            event.commit();
+        }
+        return result;
+    }
+
+    /** Return the moves to search at the top level from BOARD: the
+     *  candidate moves, less all but one of each set of moves that are
+     *  mirror images of each other when the position is symmetric, and,
+     *  when a beam is in use, only the best _beamWidth of them as scored
+     *  by scoreMoves, best first. */
+    private List<Move> rootMoves(Board board) {
+        int symmetries = board.symmetries();
+        List<Move> moves = new ArrayList<>();
+        for (Move move : candidateMoves(board)) {
+            if (move.leastImage(symmetries)) {
+                moves.add(move);
+            }
+        }
+        if (_beamWidth == 0 || moves.size() <= _beamWidth) {
+            return moves;
+        }
+        int[] scores = scoreMoves(board, moves);
+        List<Integer> order = new ArrayList<>();
+        for (int k = 0; k < moves.size(); k += 1) {
+            order.add(k);
+        }
+        order.sort((a, b) -> Integer.compare(scores[b], scores[a]));
+        List<Move> result = new ArrayList<>();
+        for (int k = 0; k < _beamWidth; k += 1) {
+            result.add(moves.get(order.get(k)));
+        }
+        return result;
+    }
+
+    /** Return a quick score for each of MOVES from BOARD, for the side
+     *  making it: the balance of territory, counted by queen moves,
+     *  after the move.  BOARD is unchanged on return. */
+    private int[] scoreMoves(Board board, List<Move> moves) {
+        EngineEvents.EvaluationBatch event =
+            new EngineEvents.EvaluationBatch();
+        event.begin();
+        int sense = board.turn() == WHITE ? 1 : -1;
+        int[] result = new int[moves.size()];
+        for (int k = 0; k < result.length; k += 1) {
+            board.makeMove(moves.get(k));
+            result[k] = sense * _distances.territory(board);
+            board.retract();
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.ply = board.numMoves();
+            event.positions = result.length;
+            event.commit();
+        }
+        return result;
+    }
+
     /** Return a heuristically determined maximum search depth
      *  based on characteristics of BOARD. */
     private int maxDepth(Board board) {
+        if (!board.hasContestedRegion()) {
+            return 1;
+        }
         int N = board.numMoves();
         if (N > DEPTH_FOUR_MOVE_NUM) {
             return 4;
@@ -141,7 +480,7 @@ class AI extends Player {
     }
 
     /** Return a heuristic value for BOARD. */
-    private int staticScore(Board board) {
+    int staticScore(Board board) {
         Piece winner = board.winner();
         if (winner == BLACK) {
             return -WINNING_VALUE;
@@ -159,27 +498,26 @@ class AI extends Player {
         } else if (N < USE_UP_TO) {
             score = SCORE_MULTIPLIER * board.getEmptySurrounding(p)
                     + board.getLocValue(p);
-        } else if (N < DEPTH_THREE_MOVE_NUM) {
-            for (int i = 0; i < 4; i++) {
-                Iterator<Square> s;
-                if (myPiece() == WHITE) {
-                    s = board.reachableFrom(board.getWhiteLoc()[i], null);
-
-                } else {
-                    s = board.reachableFrom(board.getBlackLoc()[i], null);
-                }
-                for (; s.hasNext(); score++) {
-                    s.next();
-                }
-            }
         } else {
-            Iterator<Move> m = board.legalMoves(myPiece());
-            score = 0;
-            for ( ; m.hasNext(); score++) {
-                m.next();
-            }
+            score = regionScore(board);
         }
         return score;
     }
 
+    /** Return a heuristic value for BOARD from White's point of view,
+     *  the margin estimated by my Evaluator.  Once no region is contested
+     *  and the margin is exact, the winner is decided, and the value is
+     *  positive iff White wins, scaled to outweigh any undecided
+     *  position. */
+    private int regionScore(Board board) {
+        int margin = _evaluator.margin(board);
+        if (!_evaluator.exact()) {
+            return margin;
+        }
+        if (board.turn() == BLACK) {
+            margin += 1;
+        }
+        return SCORE_MULTIPLIER * margin;
+    }
+
 }
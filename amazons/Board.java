@@ -1,5 +1,6 @@
 package amazons;
 
+import java.util.Arrays;
 import java.util.List;
 import java.util.ArrayList;
 import java.util.Stack;
@@ -7,6 +8,11 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Collections;
 import java.util.Map;
+import java.util.Random;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import static amazons.Piece.*;
 import static amazons.Move.mv;
@@ -23,6 +29,8 @@ class Board {
     static final int FIRST_INNER_SCORE = 100000;
     /** The value of the second inner squares. */
     static final int SECOND_INNER_SCORE = 10000;
+    /** Seed for the random keys used by hash(). */
+    private static final long ZOBRIST_SEED = 0x616d617aL;
 
     /** Initializes a game board with SIZE squares on a side in the
      *  initial position. */
@@ -47,6 +55,9 @@ class Board {
         }
         this.whiteLoc = model.whiteLoc.clone();
         this.blackLoc = model.blackLoc.clone();
+        this._regions = model._regions;
+        this._pastRegions.clear();
+        System.arraycopy(model._hashes, 0, _hashes, 0, _hashes.length);
     }
 
     /** Clears the board to the initial position. */
@@ -63,6 +74,7 @@ class Board {
         blackLoc[3] = Square.sq("j7");
         _move = new Stack<Move>();
         _piece = new Piece[Board.SIZE][Board.SIZE];
+        Arrays.fill(_hashes, 0);
         for (int row = 0; row < Board.SIZE; row++) {
             for (int col = 0; col < Board.SIZE; col++) {
                 put(EMPTY, col, row);
@@ -91,6 +103,11 @@ class Board {
         return _move.size();
     }
 
+    /** Return the moves made (and not undone) on this board, in order. */
+    List<Move> moves() {
+        return Collections.unmodifiableList(new ArrayList<>(_move));
+    }
+
     /** Return the winner in the current position, or null if the game is
      *  not yet finished. */
     Piece winner() {
@@ -129,9 +146,132 @@ class Board {
 
     /** Set square (COL, ROW) to P. */
     final void put(Piece p, int col, int row) {
+        set(p, col, row);
+        _regions = null;
+        _pastRegions.clear();
+    }
+
+    /** Set square S to P, keeping hash() up to date but leaving the
+     *  cached regions to the caller. */
+    private void set(Piece p, Square s) {
+        set(p, s.col(), s.row());
+    }
+
+    /** Set square (COL, ROW) to P, as for set(P, Square). */
+    private void set(Piece p, int col, int row) {
+        Piece old = _piece[row][col];
+        int index = row * SIZE + col;
+        long[] oldKeys = ZOBRIST[old == null ? EMPTY.ordinal()
+                                 : old.ordinal()],
+            newKeys = ZOBRIST[p.ordinal()];
+        for (int sym = 0; sym < Square.SYMMETRIES; sym += 1) {
+            int image = Square.transform(sym, index);
+            _hashes[sym] ^= oldKeys[image] ^ newKeys[image];
+        }
         _piece[row][col] = p;
     }
 
+    /** Return a 64-bit hash of the position: the contents of the squares
+     *  and the side to move.  It is maintained incrementally as pieces
+     *  are put and moves made, so equal positions reached by different
+     *  moves have equal hashes. */
+    long hash() {
+        return _hashes[0];
+    }
+
+    /** Return the value hash() would have after the side to move made
+     *  MOVE, without making it. */
+    long hashAfter(Move move) {
+        return hashAfter(0, move);
+    }
+
+    /** Return the hash of the image of this position under symmetry SYM
+     *  (see Square.transform) after the side to move made MOVE. */
+    private long hashAfter(int sym, Move move) {
+        long[] queen = ZOBRIST[_turn.ordinal()];
+        int from = Square.transform(sym, move.from().index()),
+            to = Square.transform(sym, move.to().index()),
+            spear = Square.transform(sym, move.spear().index());
+        return _hashes[sym] ^ queen[from] ^ queen[to]
+            ^ ZOBRIST[SPEAR.ordinal()][spear] ^ BLACK_TO_MOVE;
+    }
+
+    /** Return a hash of the position that is the same for all its images
+     *  under the symmetries of the board: the least of their hashes.
+     *  Positions that are mirror images of each other, and so have the
+     *  same value, can then share entries in tables. */
+    long canonicalHash() {
+        long result = _hashes[0];
+        for (int sym = 1; sym < Square.SYMMETRIES; sym += 1) {
+            result = Math.min(result, _hashes[sym]);
+        }
+        return result;
+    }
+
+    /** Return the value canonicalHash() would have after the side to move
+     *  made MOVE, without making it. */
+    long canonicalHashAfter(Move move) {
+        long result = hashAfter(0, move);
+        for (int sym = 1; sym < Square.SYMMETRIES; sym += 1) {
+            result = Math.min(result, hashAfter(sym, move));
+        }
+        return result;
+    }
+
+    /** Return the least symmetry whose image of this position has hash
+     *  canonicalHash().  A move from the canonical image converts to one
+     *  from this position under Square.inverse of it. */
+    int canonicalSymmetry() {
+        long least = canonicalHash();
+        int sym;
+        for (sym = 0; _hashes[sym] != least; sym += 1) {
+            continue;
+        }
+        return sym;
+    }
+
+    /** Return the code under which MOVE from this position is recorded
+     *  in tables keyed by canonicalHash(): the least Move.code() of the
+     *  images of MOVE under the symmetries of the position, as it
+     *  appears in the canonical image of the position.  A code converts
+     *  back to a move from this position as for canonicalSymmetry. */
+    int canonicalCode(Move move) {
+        int canonical = canonicalSymmetry(), symmetries = symmetries();
+        int result = move.transform(canonical).code();
+        for (int sym = 1; sym < Square.SYMMETRIES; sym += 1) {
+            if ((symmetries & (1 << sym)) != 0) {
+                result = Math.min(result, move.transform(sym)
+                                  .transform(canonical).code());
+            }
+        }
+        return result;
+    }
+
+    /** Return the set of symmetries, other than the identity, that map
+     *  this position to itself, as a bit set with bit S set for symmetry
+     *  S.  It is 0 for almost all positions. */
+    int symmetries() {
+        int result = 0;
+        for (int sym = 1; sym < Square.SYMMETRIES; sym += 1) {
+            if (_hashes[sym] == _hashes[0] && sameImage(sym)) {
+                result |= 1 << sym;
+            }
+        }
+        return result;
+    }
+
+    /** Return true iff symmetry SYM maps every piece onto an equal
+     *  piece. */
+    private boolean sameImage(int sym) {
+        for (int i = 0; i < SIZE * SIZE; i += 1) {
+            Square s = Square.sq(i);
+            if (get(s) != get(s.transform(sym))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     /** Set square COL ROW to P. */
     final void put(Piece p, char col, char row) {
         put(p, col - 'a', row - '1');
@@ -190,15 +330,24 @@ class Board {
 
     /** Move FROM-TO(SPEAR), assuming this is a legal move. */
     void makeMove(Square from, Square to, Square spear) {
+        List<Region> regions = _regions;
         _move.push(mv(from, to, spear));
-        put(_turn, to);
-        put(EMPTY, from);
-        put(SPEAR, spear);
+        _pastRegions.push(regions);
+        set(_turn, to);
+        set(EMPTY, from);
+        set(SPEAR, spear);
+        if (regions != null) {
+            _regions = splitRegions(regions, spear);
+        }
         updateQueenLoc(from, to);
-        if (_turn.equals(WHITE)) {
-            _turn = BLACK;
-        } else {
-            _turn = WHITE;
+        flipTurn();
+    }
+
+    /** Give the move to the other side. */
+    private void flipTurn() {
+        _turn = _turn.opponent();
+        for (int sym = 0; sym < Square.SYMMETRIES; sym += 1) {
+            _hashes[sym] ^= BLACK_TO_MOVE;
         }
     }
 
@@ -243,16 +392,28 @@ class Board {
                 put(EMPTY, m.spear());
                 put(get(m.to()), m.from());
                 put(EMPTY, m.to());
-                if (_turn.equals(WHITE)) {
-                    _turn = BLACK;
-                } else {
-                    _turn = WHITE;
-                }
+                flipTurn();
                 updateQueenLoc(m.to(), m.from());
             }
         }
     }
 
+    /** Take back the last move made, if any.  Unlike undo, which takes
+     *  back a move of each side, this is meant for searches, and so
+     *  restores the regions cached before the move, if they are still
+     *  known. */
+    void retract() {
+        if (numMoves() > 0) {
+            Move m = _move.pop();
+            set(EMPTY, m.spear());
+            set(get(m.to()), m.from());
+            set(EMPTY, m.to());
+            _regions = _pastRegions.isEmpty() ? null : _pastRegions.pop();
+            flipTurn();
+            updateQueenLoc(m.to(), m.from());
+        }
+    }
+
     /** Returns the value of the square.
      *  @param p The piece (BLACK or WHITE). */
     int getLocValue(Piece p) {
@@ -320,15 +481,122 @@ class Board {
 
     /** Return an Iterator over all legal moves on the current board. */
     Iterator<Move> legalMoves() {
-        return new LegalMoveIterator(_turn);
+        return new LegalMoveIterator(_turn, null);
+    }
+
+    /** Return a stream of all legal moves on the current board, in the
+     *  same order as legalMoves().  It may be made parallel: its
+     *  Spliterator splits between queens, and then between the
+     *  destinations of one queen, and knows the exact size of each part,
+     *  so the work divides evenly.  The board must not change while the
+     *  stream is in use. */
+    Stream<Move> legalMoveStream() {
+        return StreamSupport.stream(new LegalMoveSpliterator(_turn), false);
     }
 
     /** Return an Iterator over all legal moves on the current board for
      *  SIDE (regardless of whose turn it is). */
     Iterator<Move> legalMoves(Piece side) {
-        return new LegalMoveIterator(side);
+        return new LegalMoveIterator(side, null);
+    }
+
+    /** Return an Iterator over all legal moves on the current board for
+     *  SIDE's queens in REGION (regardless of whose turn it is). */
+    Iterator<Move> legalMoves(Piece side, Region region) {
+        return new LegalMoveIterator(side, region);
+    }
+
+    /** Return the regions into which the spears divide the board, in no
+     *  particular order.  Only regions containing queens are included.
+     *  The result is cached: making a move only needs to re-examine the
+     *  region into which the spear was thrown, since queen moves never
+     *  change which squares are connected.  Any other change to the board
+     *  discards the cache. */
+    List<Region> regions() {
+        if (_regions == null) {
+            List<Region> result = new ArrayList<>();
+            addRegions(ALL_SQUARES_LOW, ALL_SQUARES_HIGH, result);
+            _regions = Collections.unmodifiableList(result);
+        }
+        return _regions;
+    }
+
+    /** Return true iff some region of the board holds queens of both
+     *  colors. */
+    boolean hasContestedRegion() {
+        for (Region region : regions()) {
+            if (region.contested()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Return REGIONS, as they stand after a spear has just been thrown
+     *  to SPEAR. */
+    private List<Region> splitRegions(List<Region> regions, Square spear) {
+        List<Region> result = new ArrayList<>();
+        for (Region region : regions) {
+            if (region.contains(spear)) {
+                addRegions(region.low(), region.high(), result);
+            } else {
+                result.add(region);
+            }
+        }
+        return Collections.unmodifiableList(result);
+    }
+
+    /** Add to RESULT the regions formed by the squares in the set LOW,
+     *  HIGH (see Region) that do not hold spears. */
+    private void addRegions(long low, long high, List<Region> result) {
+        int[] stack = new int[SIZE * SIZE];
+        for (int start = 0; start < SIZE * SIZE; start += 1) {
+            if (!Region.contains(low, high, start)
+                || get(Square.sq(start)) == SPEAR) {
+                continue;
+            }
+            long[] remaining = { low, high };
+            long[] region = { 0, 0 };
+            int white, black, top;
+            white = black = top = 0;
+            moveBit(start, remaining, region);
+            stack[top++] = start;
+            while (top > 0) {
+                Square s = Square.sq(stack[--top]);
+                if (get(s) == WHITE) {
+                    white += 1;
+                } else if (get(s) == BLACK) {
+                    black += 1;
+                }
+                for (int dir = 0; dir < 8; dir += 1) {
+                    Square next = s.queenMove(dir, 1);
+                    if (next != null && get(next) != SPEAR
+                        && Region.contains(remaining[0], remaining[1],
+                                           next.index())) {
+                        moveBit(next.index(), remaining, region);
+                        stack[top++] = next.index();
+                    }
+                }
+            }
+            low = remaining[0];
+            high = remaining[1];
+            if (white + black > 0) {
+                result.add(new Region(region[0], region[1], white, black));
+            }
+        }
+    }
+
+    /** Move the bit for the square with index INDEX from the set FROM to
+     *  the set TO, each given as a two-element array in the form used by
+     *  Region. */
+    private static void moveBit(int index, long[] from, long[] to) {
+        int word = index / Region.LOW_BITS;
+        long bit = 1L << (index % Region.LOW_BITS);
+        from[word] &= ~bit;
+        to[word] |= bit;
     }
 
+
     /** An iterator used by reachableFrom. */
     private class ReachableFromIterator implements Iterator<Square> {
 
@@ -382,19 +650,142 @@ class Board {
     }
 
 
+    /** The Spliterator used by legalMoveStream.  Its elements are
+     *  grouped by (queen, destination) pairs, which are listed, with the
+     *  number of spear throws from each, when the first Spliterator is
+     *  created.  Parts split from it share those lists. */
+    private class LegalMoveSpliterator implements Spliterator<Move> {
+
+        /** A Spliterator over all the moves of SIDE. */
+        LegalMoveSpliterator(Piece side) {
+            List<Square> from = new ArrayList<>(), to = new ArrayList<>();
+            List<Long> ends = new ArrayList<>();
+            long total = 0;
+            for (int i = 0; i < SIZE * SIZE; i += 1) {
+                Square queen = Square.sq(i);
+                if (get(queen) != side) {
+                    continue;
+                }
+                for (Iterator<Square> d = reachableFrom(queen, null);
+                     d.hasNext(); ) {
+                    Square dest = d.next();
+                    for (Iterator<Square> t = reachableFrom(dest, queen);
+                         t.hasNext(); t.next()) {
+                        total += 1;
+                    }
+                    from.add(queen);
+                    to.add(dest);
+                    ends.add(total);
+                }
+            }
+            _from = from.toArray(new Square[0]);
+            _to = to.toArray(new Square[0]);
+            _ends = new long[ends.size() + 1];
+            for (int k = 0; k < ends.size(); k += 1) {
+                _ends[k + 1] = ends.get(k);
+            }
+            _lo = 0;
+            _hi = _from.length;
+            _remaining = total;
+            _spears = NO_SQUARES;
+        }
+
+        /** A Spliterator over the moves of the pairs LO .. HI-1 of the
+         *  lists of PARENT. */
+        private LegalMoveSpliterator(LegalMoveSpliterator parent, int lo,
+                                     int hi) {
+            _from = parent._from;
+            _to = parent._to;
+            _ends = parent._ends;
+            _lo = lo;
+            _hi = hi;
+            _remaining = _ends[hi] - _ends[lo];
+            _spears = NO_SQUARES;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super Move> action) {
+            while (!_spears.hasNext()) {
+                if (_lo == _hi) {
+                    return false;
+                }
+                _pair = _lo;
+                _lo += 1;
+                _spears = reachableFrom(_to[_pair], _from[_pair]);
+            }
+            _remaining -= 1;
+            action.accept(Move.mv(_from[_pair], _to[_pair], _spears.next()));
+            return true;
+        }
+
+        /** Split off the moves of the first half (by number of moves) of
+         *  my unstarted pairs, dividing between queens if my pairs
+         *  belong to more than one. */
+        @Override
+        public Spliterator<Move> trySplit() {
+            if (_spears.hasNext() || _hi - _lo < 2) {
+                return null;
+            }
+            boolean byQueen = _from[_lo] != _from[_hi - 1];
+            long half = (_ends[_lo] + _ends[_hi]) / 2;
+            int mid = -1;
+            for (int k = _lo + 1; k < _hi; k += 1) {
+                if (byQueen && _from[k] == _from[k - 1]) {
+                    continue;
+                }
+                if (mid == -1 || Math.abs(_ends[k] - half)
+                    < Math.abs(_ends[mid] - half)) {
+                    mid = k;
+                }
+            }
+            Spliterator<Move> prefix =
+                new LegalMoveSpliterator(this, _lo, mid);
+            _lo = mid;
+            _remaining = _ends[_hi] - _ends[_lo];
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return _remaining;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | DISTINCT | NONNULL | SIZED | SUBSIZED;
+        }
+
+        /** The queen and the destination of each pair. */
+        private final Square[] _from, _to;
+        /** _ends[k+1] is the number of moves of the pairs up to and
+         *  including pair k; _ends[0] is 0. */
+        private final long[] _ends;
+        /** My unstarted pairs are _lo .. _hi-1. */
+        private int _lo, _hi;
+        /** The pair whose moves are being produced. */
+        private int _pair;
+        /** The remaining spear throws of pair _pair. */
+        private Iterator<Square> _spears;
+        /** The number of moves I have left. */
+        private long _remaining;
+    }
+
     /** An iterator used by legalMoves. */
     private class LegalMoveIterator implements Iterator<Move> {
 
         /** Initializes an iterator that iterates through all the possible
          *  moves WHITE or BLACK can make.
-         *  @param side Either WHITE or BLACJ. */
-        LegalMoveIterator(Piece side) {
+         *  @param side Either WHITE or BLACJ.
+         *  @param region If non-null, only moves of queens in this region
+         *                are included. */
+        LegalMoveIterator(Piece side, Region region) {
             _squaresWithQueen = new ArrayList<Square>();
             _startingSquares = Square.iterator();
             _fromPiece = side;
             while (_startingSquares.hasNext()) {
                 Square s = _startingSquares.next();
-                if (get(s.col(), s.row()).equals(_fromPiece)) {
+                if (get(s.col(), s.row()).equals(_fromPiece)
+                    && (region == null || region.contains(s))) {
                     _squaresWithQueen.add(s);
                 }
                 if (_squaresWithQueen.size() == 4) {
@@ -526,6 +917,41 @@ class Board {
      *  The array is ordered with indicies [row][col]. */
     private Piece[][] _piece;
 
+    /** The regions of the board, or null if they must be recomputed. */
+    private List<Region> _regions;
+
+    /** The values _regions had before each of the most recent moves, the
+     *  last on top, for retract.  Any other change to the board, or a
+     *  copy, forgets them. */
+    private final Stack<List<Region>> _pastRegions = new Stack<>();
+
+    /** The set of all squares, in the form used by Region. */
+    private static final long ALL_SQUARES_LOW = -1L,
+        ALL_SQUARES_HIGH = (1L << (SIZE * SIZE - Region.LOW_BITS)) - 1;
+
+    /** Hashes of the images of the current position under each
+     *  symmetry: _hashes[s] is the hash() of its image under symmetry s,
+     *  so _hashes[0] is hash() itself. */
+    private final long[] _hashes = new long[Square.SYMMETRIES];
+
+    /** Random keys for hash(): ZOBRIST[p.ordinal()][i] is the key for
+     *  piece p on the square with index i.  Empty squares have key 0. */
+    private static final long[][] ZOBRIST =
+        new long[Piece.values().length][SIZE * SIZE];
+
+    /** Key added to hash() when it is Black's move. */
+    private static final long BLACK_TO_MOVE;
+
+    static {
+        Random random = new Random(ZOBRIST_SEED);
+        for (Piece p : Piece.values()) {
+            for (int i = 0; i < SIZE * SIZE; i += 1) {
+                ZOBRIST[p.ordinal()][i] = p == EMPTY ? 0 : random.nextLong();
+            }
+        }
+        BLACK_TO_MOVE = random.nextLong();
+    }
+
     /** The stack representing all the moves made in the game. */
     private Stack<Move> _move;
 
@@ -1,6 +1,8 @@
 package amazons;
 
 import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Random;
 import java.util.Scanner;
 import java.util.regex.Pattern;
@@ -83,6 +85,47 @@ final class Controller {
         }
     }
 
+    /** Play one game from START, which is unchanged, between players
+     *  made from WHITETEMPLATE and BLACKTEMPLATE, without reading input
+     *  or waiting for a view, and return the winner.  The players' moves
+     *  are executed as commands, as in play(), and the time each takes
+     *  to choose is recorded (see moveTimes).  A player that answers
+     *  with anything but a legal move is an IllegalStateException. */
+    Piece playGame(Board start, Player whiteTemplate, Player blackTemplate) {
+        _board = new Board(start);
+        _white = whiteTemplate.create(WHITE, this);
+        _black = blackTemplate.create(BLACK, this);
+        _firstTimedMove = _board.numMoves();
+        while (_board.legalMoves().hasNext()) {
+            Piece side = _board.turn();
+            int moves = _board.numMoves();
+            long time = System.nanoTime();
+            String command = (side == WHITE ? _white : _black).myMove();
+            _moveTimes[moves] = System.nanoTime() - time;
+            try {
+                executeCommand(command);
+            } catch (IllegalArgumentException excp) {
+                throw new IllegalStateException(
+                    String.format("%s played %s: %s", side.toName(), command,
+                                  excp.getMessage()));
+            }
+            if (_board.numMoves() != moves + 1) {
+                throw new IllegalStateException(
+                    String.format("%s played %s, which is not a move",
+                                  side.toName(), command));
+            }
+        }
+        _winner = _board.turn().opponent();
+        return _winner;
+    }
+
+    /** Return the time, in nanoseconds, that the players took to choose
+     *  each of their moves in the last game played by playGame. */
+    long[] moveTimes() {
+        return Arrays.copyOfRange(_moveTimes, _firstTimedMove,
+                                  _board.numMoves());
+    }
+
     /** Return the current board.  The value returned should not be
      *  modified by the caller. */
     Board board() {
@@ -156,6 +199,11 @@ final class Controller {
         new Command("quit$", this::doQuit),
         new Command("seed\\s+(\\d+)$", this::doSeed),
         new Command("dump$", this::doDump),
+        new Command("stats$", this::doStats),
+        new Command("positions$", this::doPositions),
+        new Command("perft\\s+(\\d+)(?:\\s+(\\d+))?$", this::doPerft),
+        new Command("analyze(?:\\s+(\\d+))?(?:\\s+(\\d+))?$",
+                    this::doAnalyze),
         new Command("new$", this::doNew),
         new Command("[a-z]\\d+\\s+[a-z]\\d+\\s+[a-z]\\d+", this::doMove),
         new Command("[a-z]\\d+\\-[a-z]\\d+\\([a-z]\\d+\\)", this::doMove),
@@ -181,10 +229,19 @@ final class Controller {
         if (cmnd.isEmpty()) {
             return;
         }
+        EngineEvents.Command event = new EngineEvents.Command();
+        event.begin();
+        int ply = _board.numMoves();
         for (Command parser : _commands) {
             parser._matcher.reset(cmnd);
             if (parser._matcher.matches()) {
                 parser._processor.accept(parser._matcher);
+                event.end();
+                if (event.shouldCommit()) {
+                    event.command = cmnd;
+                    event.ply = ply;
+                    event.commit();
+                }
                 return;
             }
         }
@@ -202,16 +259,9 @@ final class Controller {
      *  "a4-b6(c3)".
      *  @param mat The Matcher object. */
     private void doMove(Matcher mat) {
-        String input  = mat.group(0).trim();
-        input = input.replace('-', ' ');
-        input = input.replace('(', ' ');
-        input = input.replace(')', ' ');
-        String[] splitted = input.split(" ");
-        Square from = Square.sq(splitted[0]);
-        Square to = Square.sq(splitted[1]);
-        Square spear = Square.sq(splitted[2]);
-        if (_board.isLegal(from, to, spear)) {
-            _board.makeMove(from, to, spear);
+        Move move = Move.mv(mat.group(0).trim());
+        if (move != null && _board.isLegal(move)) {
+            _board.makeMove(move);
         } else {
             throw error("move not legal");
         }
@@ -271,9 +321,123 @@ final class Controller {
         System.out.printf("===%n%s===%n", _board);
     }
 
+    /** Command "stats": print the statistics of the search each player
+     *  made for its last move, for those players that keep them. */
+    private void doStats(Matcher unused) {
+        System.out.println("===");
+        for (Piece side : new Piece[] { WHITE, BLACK }) {
+            Player player = side == WHITE ? _white : _black;
+            SearchStats stats = player == null ? null : player.stats();
+            System.out.printf("%s: %s%n", side.toName(),
+                              stats == null ? "no statistics" : stats);
+        }
+        System.out.println("===");
+    }
+
+    /** Command "positions": print what the position database records of
+     *  the current position: how many games reached it, how often each
+     *  side won, and how often each move was played and won. */
+    private void doPositions(Matcher unused) {
+        PositionDatabase.Position position =
+            PositionDatabase.standard().find(_board);
+        if (position == null) {
+            System.out.println("=== no games");
+            System.out.println("===");
+            return;
+        }
+        int games = position.games();
+        System.out.printf("=== %d games, White %d, Black %d%n", games,
+                          position.wins(WHITE), position.wins(BLACK));
+        for (int k = 0; k < position.size(); k += 1) {
+            int played = position.played(k);
+            System.out.printf("%2d. %-12s %8d %5.1f%%%n", k + 1,
+                              position.move(k), played,
+                              100.0 * position.won(k) / played);
+        }
+        System.out.println("===");
+    }
+
+    /** Command "analyze [N [MS]]", where N and MS are the first and
+     *  second groups of MAT: search the current position for MS
+     *  milliseconds (by default, ANALYSIS_TIME) and print its best N
+     *  moves (by default, ANALYSIS_LINES), with their chances of winning
+     *  and principal variations.  The search tree is kept from one
+     *  analysis to the next, so analyzing successive positions of a game
+     *  builds on earlier work. */
+    private void doAnalyze(Matcher mat) {
+        int lines, millis;
+        try {
+            lines = mat.group(1) == null ? ANALYSIS_LINES
+                : Integer.parseInt(mat.group(1));
+            millis = mat.group(2) == null ? ANALYSIS_TIME
+                : Integer.parseInt(mat.group(2));
+        } catch (NumberFormatException excp) {
+            throw error("number too large");
+        }
+        if (!_board.legalMoves().hasNext()) {
+            throw error("no moves to analyze");
+        }
+        if (_analyzer == null) {
+            _analyzer =
+                new MCTSPlayer(millis, MCTSPlayer.DEFAULT_PLAYOUT_DEPTH,
+                               Runtime.getRuntime().availableProcessors());
+            _analyzer.setSeed(_randGen.nextLong());
+        }
+        List<MCTSPlayer.Line> analysis =
+            _analyzer.analyze(_board, lines, millis);
+        System.out.printf("=== %s to move, %d iterations%n",
+                          _board.turn().toName(), _analyzer.iterations());
+        for (int k = 0; k < analysis.size(); k += 1) {
+            MCTSPlayer.Line line = analysis.get(k);
+            StringBuilder variation = new StringBuilder();
+            for (Move move : line.variation()) {
+                variation.append(' ').append(move);
+            }
+            System.out.printf("%2d. %-12s %5.1f%% %8d %s%n", k + 1,
+                              line.variation().get(0), 100 * line.value(),
+                              line.visits(), variation);
+        }
+        System.out.println("===");
+    }
+
+    /** Command "perft N [MB]", where N and MB are the first and second
+     *  groups of MAT: print the number of sequences of legal moves of
+     *  each length up to N from the current position, counted with one
+     *  thread per processor and, if MB is given, a table of MB
+     *  megabytes. */
+    private void doPerft(Matcher mat) {
+        int depth, memory;
+        try {
+            depth = Integer.parseInt(mat.group(1));
+            memory = mat.group(2) == null ? 0
+                : Integer.parseInt(mat.group(2));
+        } catch (NumberFormatException excp) {
+            throw error("number too large");
+        }
+        new Perft(Runtime.getRuntime().availableProcessors(),
+                  (long) memory << 20).report(_board, depth, System.out);
+    }
+
     /** The board. */
     private Board _board = new Board();
 
+    /** Number of lines printed by "analyze" by default. */
+    static final int ANALYSIS_LINES = 3;
+
+    /** Time spent by "analyze" by default, in milliseconds. */
+    static final int ANALYSIS_TIME = 5000;
+
+    /** The times taken to choose each move by number, in games played
+     *  by playGame. */
+    private final long[] _moveTimes = new long[Board.SIZE * Board.SIZE];
+
+    /** The number of the first move timed in the last game played by
+     *  playGame. */
+    private int _firstTimedMove;
+
+    /** The searcher used by "analyze", or null if not yet needed. */
+    private MCTSPlayer _analyzer;
+
     /** The winning side of the current game. */
     private Piece _winner;
 
@@ -0,0 +1,124 @@
+package amazons;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static amazons.Piece.*;
+
+/** Queen-move distance maps, as used by the territory evaluator.  The
+ *  distance of a square from a side is the least number of queen moves
+ *  any of that side's queens needs to reach it through empty squares,
+ *  ignoring spear throws and the opponent's replies.  This class does
+ *  the computation with a plain breadth-first search; VectorDistanceMap
+ *  does the same computation with the jdk.incubator.vector API, and
+ *  create() picks whichever is available on this JVM.  Instances keep
+ *  scratch buffers, so each thread needs its own.
+ *  @author Ethan Yim
+ */
+class DistanceMap {
+
+    /** The distance recorded for squares no queen of a side can reach. */
+    static final int UNREACHABLE = Byte.MAX_VALUE;
+
+    /** The number of squares on the board. */
+    static final int SQUARES = Board.SIZE * Board.SIZE;
+
+    /** Name of the class implementing the vectorized backend. */
+    private static final String VECTOR_BACKEND = "amazons.VectorDistanceMap";
+
+    /** A distance map that uses the scalar breadth-first search. */
+    DistanceMap() {
+    }
+
+    /** Return the fastest DistanceMap available on this JVM: the
+     *  vectorized one if jdk.incubator.vector has been compiled in and
+     *  is visible at run time, and the scalar one otherwise. */
+    static DistanceMap create() {
+        try {
+            return (DistanceMap) Class.forName(VECTOR_BACKEND)
+                .getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError excp) {
+            return new DistanceMap();
+        }
+    }
+
+    /** Return a short name for this backend, for reports. */
+    String backend() {
+        return "scalar";
+    }
+
+    /** Fill DIST, indexed by Square.index(), with the queen-move
+     *  distance of each square from the pieces of SIDE on BOARD.  The
+     *  squares holding SIDE's queens get 0, and squares that cannot be
+     *  reached get UNREACHABLE. */
+    void compute(Board board, Piece side, int[] dist) {
+        Arrays.fill(dist, UNREACHABLE);
+        int head, tail;
+        head = tail = 0;
+        for (int i = 0; i < SQUARES; i += 1) {
+            if (board.get(Square.sq(i)) == side) {
+                dist[i] = 0;
+                _queue[tail] = i;
+                tail += 1;
+            }
+        }
+        while (head < tail) {
+            Square from = Square.sq(_queue[head]);
+            head += 1;
+            int next = dist[from.index()] + 1;
+            for (int dir = 0; dir < 8; dir += 1) {
+                for (int steps = 1; true; steps += 1) {
+                    Square to = from.queenMove(dir, steps);
+                    if (to == null || board.get(to) != EMPTY) {
+                        break;
+                    }
+                    if (dist[to.index()] > next) {
+                        dist[to.index()] = next;
+                        _queue[tail] = to.index();
+                        tail += 1;
+                    }
+                }
+            }
+        }
+    }
+
+    /** Return the territory balance of BOARD from White's point of view:
+     *  the number of empty squares White reaches in fewer queen moves
+     *  than Black, less the number Black reaches first. */
+    int territory(Board board) {
+        return territory(board, null);
+    }
+
+    /** Return the territory balance of BOARD, as for territory(BOARD), but
+     *  counting only the squares in REGIONS, or all squares if REGIONS is
+     *  null. */
+    int territory(Board board, List<Region> regions) {
+        long low, high;
+        low = high = -1L;
+        if (regions != null) {
+            low = high = 0;
+            for (Region region : regions) {
+                low |= region.low();
+                high |= region.high();
+            }
+        }
+        compute(board, WHITE, _white);
+        compute(board, BLACK, _black);
+        int score = 0;
+        for (int i = 0; i < SQUARES; i += 1) {
+            if (!Region.contains(low, high, i)) {
+                continue;
+            } else if (_white[i] < _black[i]) {
+                score += 1;
+            } else if (_black[i] < _white[i]) {
+                score -= 1;
+            }
+        }
+        return score;
+    }
+
+    /** Work queue of square indices for the breadth-first search. */
+    private final int[] _queue = new int[SQUARES];
+    /** Scratch distance maps for White and Black used by territory. */
+    private final int[] _white = new int[SQUARES], _black = new int[SQUARES];
+}
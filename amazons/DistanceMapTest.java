@@ -0,0 +1,64 @@
+package amazons;
+
+import org.junit.Test;
+
+import static amazons.Piece.*;
+import static org.junit.Assert.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/** JUnit tests of DistanceMap.
+ *  @author Ethan Yim
+ */
+public class DistanceMapTest {
+
+    /** Tests queen-move distances on the initial board and on a board
+     *  with a walled-off corner. */
+    @Test
+    public void testDistanceMap() {
+        Board b = new Board();
+        DistanceMap scalar = new DistanceMap();
+        int[] dist = new int[DistanceMap.SQUARES];
+        scalar.compute(b, WHITE, dist);
+        assertEquals(0, dist[Square.sq("d1").index()]);
+        assertEquals(1, dist[Square.sq("d9").index()]);
+        assertEquals(2, dist[Square.sq("e5").index()]);
+        assertEquals(DistanceMap.UNREACHABLE,
+                     dist[Square.sq("d10").index()]);
+        b.put(SPEAR, Square.sq("i1"));
+        b.put(SPEAR, Square.sq("i2"));
+        b.put(SPEAR, Square.sq("j2"));
+        scalar.compute(b, BLACK, dist);
+        assertEquals(DistanceMap.UNREACHABLE, dist[Square.sq("j1").index()]);
+        assertEquals(0, scalar.territory(new Board()));
+    }
+
+    /** Tests that the backend chosen by DistanceMap.create agrees with the
+     *  scalar search along a sequence of random games. */
+    @Test
+    public void testDistanceMapBackendsAgree() {
+        DistanceMap scalar = new DistanceMap();
+        DistanceMap best = DistanceMap.create();
+        int[] expected = new int[DistanceMap.SQUARES];
+        int[] actual = new int[DistanceMap.SQUARES];
+        Random random = new Random(UnitTest.RANDOM_SEED);
+        for (int game = 0; game < 4; game += 1) {
+            Board b = new Board();
+            while (true) {
+                for (Piece side : new Piece[] { WHITE, BLACK }) {
+                    scalar.compute(b, side, expected);
+                    best.compute(b, side, actual);
+                    assertArrayEquals(best.backend(), expected, actual);
+                }
+                assertEquals(scalar.territory(b), best.territory(b));
+                List<Move> moves = new ArrayList<>();
+                b.legalMoves().forEachRemaining(moves::add);
+                if (moves.isEmpty()) {
+                    break;
+                }
+                b.makeMove(moves.get(random.nextInt(moves.size())));
+            }
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package amazons;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/** Java Flight Recorder events marking the phases of the engine's work,
+ *  so that hot spots in a recording can be matched with the phase of
+ *  the game.  All are disabled by default; while an event is disabled,
+ *  or no recording is running, creating, timing and committing it is
+ *  compiled away.  To record them, start the JVM with
+ *  -XX:StartFlightRecording:settings=amazons/amazons.jfc,filename=FILE,
+ *  or enable the events named here in a recording's own settings.
+ *
+ *  Each event is used as a JFR event should be: created, begun, ended,
+ *  and, if shouldCommit() says it is wanted, filled in and committed.
+ *  @author Ethan Yim
+ */
+final class EngineEvents {
+
+    /** Not instantiable. */
+    private EngineEvents() {
+    }
+
+    /** One search for a move: an alpha-beta search to a fixed depth by
+     *  the AI, or a timed run of iterations by the MCTSPlayer. */
+    @Name("amazons.Search")
+    @Label("Search")
+    @Category({ "Amazons", "Search" })
+    @Description("A search for a move")
+    @Enabled(false)
+    @StackTrace(false)
+    static final class Search extends Event {
+        /** "alphabeta" or "mcts". */
+        @Label("Engine")
+        String engine;
+        /** Moves made before the position searched. */
+        @Label("Ply")
+        int ply;
+        /** The depth searched (the playout depth, for MCTS). */
+        @Label("Depth")
+        int depth;
+        /** Nodes visited (iterations, for MCTS). */
+        @Label("Nodes")
+        long nodes;
+        /** The move chosen. */
+        @Label("Move")
+        String move;
+    }
+
+    /** The search of the subtree below one move at the root of the AI's
+     *  search. */
+    @Name("amazons.RootMove")
+    @Label("Root Move")
+    @Category({ "Amazons", "Search" })
+    @Description("The search below one move at the root")
+    @Enabled(false)
+    @StackTrace(false)
+    static final class RootMove extends Event {
+        /** The move. */
+        @Label("Move")
+        String move;
+        /** The depth searched below it. */
+        @Label("Depth")
+        int depth;
+        /** Nodes visited below it. */
+        @Label("Nodes")
+        long nodes;
+        /** Its value, from White's point of view. */
+        @Label("Value")
+        int value;
+    }
+
+    /** The scoring of a batch of moves by territory, as done to choose
+     *  the moves the beam searches. */
+    @Name("amazons.EvaluationBatch")
+    @Label("Evaluation Batch")
+    @Category({ "Amazons", "Evaluation" })
+    @Description("The scoring of a batch of moves")
+    @Enabled(false)
+    @StackTrace(false)
+    static final class EvaluationBatch extends Event {
+        /** Moves made before the position whose moves were scored. */
+        @Label("Ply")
+        int ply;
+        /** Number of moves scored. */
+        @Label("Positions")
+        int positions;
+    }
+
+    /** The generation of the moves to search from one position. */
+    @Name("amazons.MoveGeneration")
+    @Label("Move Generation")
+    @Category({ "Amazons", "Move Generation" })
+    @Description("The generation of the moves from one position")
+    @Enabled(false)
+    @StackTrace(false)
+    static final class MoveGeneration extends Event {
+        /** Moves made before the position. */
+        @Label("Ply")
+        int ply;
+        /** Number of moves generated. */
+        @Label("Moves")
+        int moves;
+    }
+
+    /** The execution of one command by the Controller. */
+    @Name("amazons.Command")
+    @Label("Command")
+    @Category({ "Amazons", "Controller" })
+    @Description("The execution of a command")
+    @Enabled(false)
+    @StackTrace(false)
+    static final class Command extends Event {
+        /** The command, as given. */
+        @Label("Command")
+        String command;
+        /** Moves made before the command. */
+        @Label("Ply")
+        int ply;
+    }
+}
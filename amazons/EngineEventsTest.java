@@ -0,0 +1,53 @@
+package amazons;
+
+import org.junit.Test;
+
+import static amazons.Piece.*;
+import static org.junit.Assert.*;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+/** JUnit tests of EngineEvents.
+ *  @author Ethan Yim
+ */
+public class EngineEventsTest {
+
+    /** Tests that the AI's search is recorded by Flight Recorder when its
+     *  event is enabled, and not otherwise. */
+    @Test
+    public void testEngineEvents() throws IOException {
+        Controller controller =
+            new Controller(new NullView(), null, new NullReporter(),
+                           new AI(), new AI());
+        AI ai = (AI) new AI().create(WHITE, controller);
+        Board b = new Board();
+        File file = File.createTempFile("engine", ".jfr");
+        file.deleteOnExit();
+        Move move;
+        try (Recording recording = new Recording()) {
+            recording.enable("amazons.Search");
+            recording.start();
+            move = ai.searchMove(b, 1);
+            recording.disable("amazons.Search");
+            ai.searchMove(b, 1);
+            recording.stop();
+            recording.dump(file.toPath());
+        }
+        List<RecordedEvent> events = new ArrayList<>();
+        for (RecordedEvent event : RecordingFile.readAllEvents(file.toPath())) {
+            if (event.getEventType().getName().equals("amazons.Search")) {
+                events.add(event);
+            }
+        }
+        assertEquals(1, events.size());
+        assertEquals("alphabeta", events.get(0).getString("engine"));
+        assertEquals(1, events.get(0).getInt("depth"));
+        assertEquals(move.toString(), events.get(0).getString("move"));
+        assertEquals(ai.stats().nodes(), events.get(0).getLong("nodes"));
+    }
+}
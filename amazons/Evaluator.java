@@ -0,0 +1,69 @@
+package amazons;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static amazons.Piece.*;
+
+/** Estimates the final margin of a position region by region.  A sealed
+ *  region is worth the number of moves its owner has left in it, and
+ *  contested regions are scored by territory.  Instances keep scratch
+ *  buffers and caches, so each thread needs its own.
+ *  @author Ethan Yim
+ */
+class Evaluator {
+
+    /** An evaluator that looks sealed regions up in TABLEBASE (if not
+     *  null) before solving them. */
+    Evaluator(RegionTablebase tablebase) {
+        _solver = new RegionSolver(tablebase);
+    }
+
+    /** Return the solver I use for sealed regions. */
+    RegionSolver solver() {
+        return _solver;
+    }
+
+    /** Return the estimated margin on BOARD from White's point of view:
+     *  the moves White has left in its sealed regions less those Black
+     *  has in its own, plus White's territory in the contested regions.
+     *  Once no region is contested, this is exact unless some sealed
+     *  region was too large for RegionSolver.movesLeft to solve, which
+     *  exact() tells.  If it is exact, the side to move wins iff it has
+     *  more moves left than its opponent. */
+    int margin(Board board) {
+        List<Region> contested = new ArrayList<>();
+        int sealed = 0;
+        _exact = true;
+        for (Region region : board.regions()) {
+            if (region.contested()) {
+                contested.add(region);
+            } else {
+                int moves = _solver.movesLeft(board, region);
+                sealed += region.owner() == WHITE ? moves : -moves;
+                _exact &= _solver.exact();
+            }
+        }
+        if (contested.isEmpty()) {
+            return sealed;
+        }
+        _exact = false;
+        return sealed + _distances.territory(board, contested);
+    }
+
+    /** Return true iff the result of the last call of margin was exact:
+     *  no region was contested, and the moves left in every sealed region
+     *  were counted rather than estimated. */
+    boolean exact() {
+        return _exact;
+    }
+
+    /** Distance maps used to estimate territory. */
+    private final DistanceMap _distances = DistanceMap.create();
+
+    /** Solver for the moves left in sealed regions. */
+    private final RegionSolver _solver;
+
+    /** True iff the last margin was exact. */
+    private boolean _exact;
+}
@@ -0,0 +1,29 @@
+package amazons;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+import java.util.Random;
+
+/** JUnit tests of Evaluator.
+ *  @author Ethan Yim
+ */
+public class EvaluatorTest {
+
+    /** Tests that a margin is reported as exact only when no region is
+     *  contested and every sealed region was counted exactly. */
+    @Test
+    public void testExact() {
+        Random random = new Random(UnitTest.RANDOM_SEED);
+        Evaluator evaluator = new Evaluator(null);
+        Board small = UnitTest.sealedRegion(random, 6, 1);
+        Board large =
+            UnitTest.sealedRegion(random, RegionSolver.MAX_EXACT + 4, 1);
+        evaluator.margin(small);
+        assertTrue(evaluator.exact());
+        evaluator.margin(large);
+        assertFalse(evaluator.exact());
+        evaluator.margin(new Board());
+        assertFalse(evaluator.exact());
+    }
+}
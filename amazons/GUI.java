@@ -23,6 +23,7 @@ class GUI extends TopLevel implements View, Reporter {
         System.err.println("Error: --display not implemented.");
         System.exit(2);
 
+        addMenuButton("Game->Positions", this::positions);
         addMenuButton("Game->Quit", this::quit);
         addMenuButton("Settings->Seed", this::newSeed);
 
@@ -38,6 +39,11 @@ class GUI extends TopLevel implements View, Reporter {
         _pendingCommands.offer("quit");
     }
 
+    /** Response to "Positions" button click. */
+    private void positions(String dummy) {
+        _pendingCommands.offer("positions");
+    }
+
     /** Pattern describing the 'seed' command's arguments. */
     private static final Pattern SEED_PATN =
         Pattern.compile("\\s*(-?\\d{1,18})\\s*$");
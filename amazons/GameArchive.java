@@ -0,0 +1,383 @@
+package amazons;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static amazons.Piece.*;
+
+/** An archive of complete games in a compact binary form, read through a
+ *  memory-mapped file, so that games can be read without parsing text
+ *  and positions replayed without copying.  A buffer holds at most 2GB,
+ *  so a larger file is mapped in several segments, each holding whole
+ *  games.
+ *
+ *  The file starts with two ints, MAGIC and VERSION.  Each game follows:
+ *  its seed (a long), its result (a byte: 0 if undecided, 1 if White
+ *  won, 2 if Black won), the lengths in bytes of the names of its White
+ *  and Black players (a byte each), the names (in UTF-8), the number of
+ *  moves (a short), and the moves' Move.code()s, 21 bits each, packed
+ *  into as few bytes as possible, high bits first.  After the games
+ *  come the index, the offset in the file of each game (a long each),
+ *  and then a trailer: the number of games (an int), the offset of the
+ *  index (a long), and MAGIC again.  All numbers are big-endian.
+ *  @author Ethan Yim
+ */
+class GameArchive {
+
+    /** First and last int of an archive file. */
+    static final int MAGIC = 0x414d4741;
+    /** Version of the file format. */
+    static final int VERSION = 1;
+    /** Size of the file header in bytes. */
+    private static final int HEADER_BYTES = 2 * Integer.BYTES;
+    /** Size of the trailer in bytes. */
+    private static final int TRAILER_BYTES = 2 * Integer.BYTES + Long.BYTES;
+    /** Bits in one packed move. */
+    static final int MOVE_BITS = 3 * Move.CODE_BITS;
+    /** Mask selecting one packed move. */
+    private static final int MOVE_MASK = (1 << MOVE_BITS) - 1;
+    /** Bytes of a game record before the players' names. */
+    private static final int GAME_HEADER_BYTES = Long.BYTES + 3;
+    /** Longest name recorded for a player, in bytes. */
+    static final int MAX_NAME_BYTES = 255;
+    /** Most moves recorded in one game. */
+    static final int MAX_MOVES = Short.MAX_VALUE;
+    /** Most bytes mapped as one segment. */
+    static final int MAX_SEGMENT_BYTES = Integer.MAX_VALUE;
+
+    /** An archive read from CHANNEL, whose games are mapped into memory
+     *  in segments of at most SEGMENT bytes. */
+    private GameArchive(FileChannel channel, long segment)
+        throws IOException {
+        long size = channel.size();
+        if (size < HEADER_BYTES + TRAILER_BYTES) {
+            throw new IOException("not a game archive");
+        }
+        ByteBuffer header = read(channel, 0, HEADER_BYTES),
+            trailer = read(channel, size - TRAILER_BYTES, TRAILER_BYTES);
+        if (header.getInt(0) != MAGIC
+            || header.getInt(Integer.BYTES) != VERSION
+            || trailer.getInt(TRAILER_BYTES - Integer.BYTES) != MAGIC) {
+            throw new IOException("not a game archive");
+        }
+        _count = trailer.getInt(0);
+        long index = trailer.getLong(Integer.BYTES);
+        if (_count < 0 || index < HEADER_BYTES
+            || index + (long) _count * Long.BYTES != size - TRAILER_BYTES) {
+            throw new IOException("corrupt game archive");
+        }
+        if ((long) _count * Long.BYTES > MAX_SEGMENT_BYTES) {
+            throw new IOException("too many games to map");
+        }
+        _index = channel.map(FileChannel.MapMode.READ_ONLY, index,
+                             (long) _count * Long.BYTES);
+
+        List<ByteBuffer> segments = new ArrayList<>();
+        List<Long> starts = new ArrayList<>();
+        long start = HEADER_BYTES, last = HEADER_BYTES;
+        for (int k = 0; k <= _count; k += 1) {
+            long end = k < _count ? _index.getLong(k * Long.BYTES) : index;
+            if (end < last || end > index) {
+                throw new IOException("corrupt game archive");
+            }
+            if (end - start > segment) {
+                if (end - last > segment) {
+                    throw new IOException("game too large to map");
+                }
+                segments.add(channel.map(FileChannel.MapMode.READ_ONLY,
+                                         start, last - start));
+                starts.add(start);
+                start = last;
+            }
+            last = end;
+        }
+        segments.add(channel.map(FileChannel.MapMode.READ_ONLY,
+                                 start, index - start));
+        starts.add(start);
+        _segments = segments.toArray(new ByteBuffer[0]);
+        _starts = starts.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    /** Return the archive in FILE, mapped into memory. */
+    static GameArchive open(String file) throws IOException {
+        return open(file, MAX_SEGMENT_BYTES);
+    }
+
+    /** Return the archive in FILE, mapped into memory in segments of at
+     *  most SEGMENT bytes. */
+    static GameArchive open(String file, long segment) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(file),
+                                                    StandardOpenOption.READ)) {
+            return new GameArchive(channel, segment);
+        }
+    }
+
+    /** Return the BYTES bytes of CHANNEL starting at POSITION. */
+    private static ByteBuffer read(FileChannel channel, long position,
+                                   int bytes) throws IOException {
+        ByteBuffer result = ByteBuffer.allocate(bytes);
+        while (result.hasRemaining()) {
+            if (channel.read(result, position + result.position()) < 0) {
+                throw new IOException("unexpected end of archive");
+            }
+        }
+        return result;
+    }
+
+    /** Return the number of games I hold. */
+    int size() {
+        return _count;
+    }
+
+    /** Return game number K (numbering from 0). */
+    Game game(int k) {
+        if (k < 0 || k >= _count) {
+            throw new IndexOutOfBoundsException("no game " + k);
+        }
+        long offset = _index.getLong(k * Long.BYTES);
+        int s = Arrays.binarySearch(_starts, offset);
+        if (s < 0) {
+            s = -s - 2;
+        }
+        return new Game(_segments[s], (int) (offset - _starts[s]));
+    }
+
+    /** Return my games, in order, as a list whose elements are read from
+     *  the file when asked for. */
+    List<Game> games() {
+        return new AbstractList<Game>() {
+            @Override
+            public Game get(int k) {
+                return game(k);
+            }
+
+            @Override
+            public int size() {
+                return _count;
+            }
+        };
+    }
+
+    /** One game of an archive, read from the archive's segment holding
+     *  it as needed. */
+    static final class Game {
+
+        /** The game whose record starts at OFFSET in the segment
+         *  BUFFER. */
+        private Game(ByteBuffer buffer, int offset) {
+            _buffer = buffer;
+            _offset = offset;
+            int names = offset + GAME_HEADER_BYTES;
+            _whiteName = names;
+            _blackName = names + (buffer.get(offset + Long.BYTES + 1) & 0xff);
+            _moves = _blackName + (buffer.get(offset + Long.BYTES + 2) & 0xff)
+                + Short.BYTES;
+            _plies = _buffer.getShort(_moves - Short.BYTES) & 0xffff;
+            _end = _moves + packedBytes(_plies);
+        }
+
+        /** Return the seed recorded for the game. */
+        long seed() {
+            return _buffer.getLong(_offset);
+        }
+
+        /** Return the winner, or EMPTY if the game was not finished. */
+        Piece winner() {
+            switch (_buffer.get(_offset + Long.BYTES)) {
+            case 1:
+                return WHITE;
+            case 2:
+                return BLACK;
+            default:
+                return EMPTY;
+            }
+        }
+
+        /** Return the name of the White player. */
+        String white() {
+            return name(_whiteName, _blackName);
+        }
+
+        /** Return the name of the Black player. */
+        String black() {
+            return name(_blackName, _moves - Short.BYTES);
+        }
+
+        /** Return the number of moves. */
+        int plies() {
+            return _plies;
+        }
+
+        /** Return the Move.code() of move number K (from 0). */
+        int moveCode(int k) {
+            if (k < 0 || k >= _plies) {
+                throw new IndexOutOfBoundsException("no move " + k);
+            }
+            long bit = (long) k * MOVE_BITS;
+            int start = _moves + (int) (bit >>> 3);
+            int word = 0;
+            for (int b = start; b < start + Integer.BYTES; b += 1) {
+                word = (word << Byte.SIZE) | (b < _end ? _buffer.get(b) & 0xff
+                                              : 0);
+            }
+            return (word >>> (Integer.SIZE - MOVE_BITS - (int) (bit & 7)))
+                & MOVE_MASK;
+        }
+
+        /** Return move number K (from 0). */
+        Move move(int k) {
+            return Move.mv(moveCode(k));
+        }
+
+        /** Call ACTION on each position of the game in turn, from the
+         *  initial position to the last, all on the one Board, which
+         *  changes between calls. */
+        void forEachPosition(Consumer<Board> action) {
+            Board board = new Board();
+            action.accept(board);
+            for (int k = 0; k < _plies; k += 1) {
+                board.makeMove(move(k));
+                action.accept(board);
+            }
+        }
+
+        /** Return the name held in bytes START .. END-1 of the buffer. */
+        private String name(int start, int end) {
+            byte[] bytes = new byte[end - start];
+            _buffer.get(start, bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        /** The segment of the archive holding the game. */
+        private final ByteBuffer _buffer;
+        /** Where, in _buffer, the record starts, the names start, and
+         *  the moves start and end. */
+        private final int _offset, _whiteName, _blackName, _moves, _end;
+        /** The number of moves. */
+        private final int _plies;
+    }
+
+    /** Return the number of bytes holding PLIES packed moves. */
+    private static int packedBytes(int plies) {
+        return (int) (((long) plies * MOVE_BITS + Byte.SIZE - 1) / Byte.SIZE);
+    }
+
+    /** Writes an archive, one game at a time.  The archive appears under
+     *  its name only once it is closed. */
+    static final class Writer implements Closeable {
+
+        /** A writer of an archive to FILE, which is replaced. */
+        Writer(String file) throws IOException {
+            _file = Paths.get(file);
+            _tmp = Paths.get(file + ".tmp");
+            _out = new DataOutputStream(new BufferedOutputStream(
+                       new FileOutputStream(_tmp.toFile())));
+            _out.writeInt(MAGIC);
+            _out.writeInt(VERSION);
+            _size = HEADER_BYTES;
+        }
+
+        /** Add the game consisting of MOVES from the initial position,
+         *  won by WINNER (EMPTY if not finished), played from SEED by
+         *  WHITE and BLACK (names of at most MAX_NAME_BYTES bytes in
+         *  UTF-8). */
+        void add(List<Move> moves, Piece winner, long seed, String white,
+                 String black) throws IOException {
+            byte[] whiteName = white.getBytes(StandardCharsets.UTF_8),
+                blackName = black.getBytes(StandardCharsets.UTF_8);
+            if (whiteName.length > MAX_NAME_BYTES
+                || blackName.length > MAX_NAME_BYTES) {
+                throw new IllegalArgumentException("player name too long");
+            }
+            if (moves.size() > MAX_MOVES) {
+                throw new IllegalArgumentException("game too long");
+            }
+            if (_games == _offsets.length) {
+                _offsets = Arrays.copyOf(_offsets, 2 * _offsets.length);
+            }
+            _offsets[_games] = _size;
+            _games += 1;
+            _out.writeLong(seed);
+            _out.writeByte(winner == WHITE ? 1 : winner == BLACK ? 2 : 0);
+            _out.writeByte(whiteName.length);
+            _out.writeByte(blackName.length);
+            _out.write(whiteName);
+            _out.write(blackName);
+            _out.writeShort(moves.size());
+            long bits = 0;
+            int pending = 0;
+            for (Move move : moves) {
+                bits = (bits << MOVE_BITS) | move.code();
+                pending += MOVE_BITS;
+                while (pending >= Byte.SIZE) {
+                    pending -= Byte.SIZE;
+                    _out.writeByte((int) (bits >>> pending));
+                }
+            }
+            if (pending > 0) {
+                _out.writeByte((int) (bits << (Byte.SIZE - pending)));
+            }
+            _size += GAME_HEADER_BYTES + whiteName.length + blackName.length
+                + Short.BYTES + packedBytes(moves.size());
+        }
+
+        /** Return the number of games added so far. */
+        int games() {
+            return _games;
+        }
+
+        /** Write the index and the trailer, and put the archive in
+         *  place. */
+        @Override
+        public void close() throws IOException {
+            if (_out == null) {
+                return;
+            }
+            for (int k = 0; k < _games; k += 1) {
+                _out.writeLong(_offsets[k]);
+            }
+            _out.writeInt(_games);
+            _out.writeLong(_size);
+            _out.writeInt(MAGIC);
+            _out.close();
+            _out = null;
+            Files.move(_tmp, _file, StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        /** The archive's final and temporary names. */
+        private final Path _file, _tmp;
+        /** Where the archive is written, or null once closed. */
+        private DataOutputStream _out;
+        /** The number of bytes written before the index. */
+        private long _size;
+        /** The offsets of the games written so far. */
+        private long[] _offsets = new long[1024];
+        /** The number of games written so far. */
+        private int _games;
+    }
+
+    /** The mapped segments of the file holding the games, in order. */
+    private final ByteBuffer[] _segments;
+    /** The offset in the file of the start of each segment. */
+    private final long[] _starts;
+    /** The mapped index of the file. */
+    private final ByteBuffer _index;
+    /** The number of games. */
+    private final int _count;
+}
@@ -0,0 +1,114 @@
+package amazons;
+
+import org.junit.Test;
+
+import static amazons.Piece.*;
+import static org.junit.Assert.*;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/** JUnit tests of GameArchive.
+ *  @author Ethan Yim
+ */
+public class GameArchiveTest {
+
+    /** Tests that a GameArchive gives back the games written to it, with
+     *  their headers, moves and positions. */
+    @Test
+    public void testGameArchive() throws IOException {
+        Random random = new Random(UnitTest.RANDOM_SEED);
+        List<Board> games = new ArrayList<>();
+        for (int plies : new int[] { 0, 1, 7, 8, 40 }) {
+            games.add(Match.opening(plies, random));
+        }
+        File file = File.createTempFile("games", ".archive");
+        file.deleteOnExit();
+        try (GameArchive.Writer writer =
+             new GameArchive.Writer(file.getPath())) {
+            for (int g = 0; g < games.size(); g += 1) {
+                writer.add(games.get(g).moves(), g % 2 == 0 ? WHITE : EMPTY,
+                           g, "white" + g, "black\u00e9");
+            }
+            assertEquals(games.size(), writer.games());
+        }
+        GameArchive archive = GameArchive.open(file.getPath());
+        assertEquals(games.size(), archive.size());
+        for (int g = 0; g < games.size(); g += 1) {
+            Board board = games.get(g);
+            GameArchive.Game game = archive.game(g);
+            assertEquals(g, game.seed());
+            assertEquals(g % 2 == 0 ? WHITE : EMPTY, game.winner());
+            assertEquals("white" + g, game.white());
+            assertEquals("black\u00e9", game.black());
+            assertEquals(board.numMoves(), game.plies());
+            for (int k = 0; k < game.plies(); k += 1) {
+                assertEquals(board.moves().get(k), game.move(k));
+            }
+            int[] positions = { 0 };
+            game.forEachPosition(b -> positions[0] += 1);
+            assertEquals(board.numMoves() + 1, positions[0]);
+            Board last = new Board();
+            game.forEachPosition(last::copy);
+            assertEquals(board.toString(), last.toString());
+        }
+        assertEquals(games.size(), archive.games().size());
+
+        File bad = File.createTempFile("games", ".bad");
+        bad.deleteOnExit();
+        try {
+            GameArchive.open(bad.getPath());
+            fail("empty file accepted as an archive");
+        } catch (IOException excp) {
+            /* Expected. */
+        }
+    }
+
+    /** Tests that an archive mapped in segments too small to hold all
+     *  its games reads them back as one mapped whole, and that a game
+     *  too large for a segment is refused. */
+    @Test
+    public void testSegments() throws IOException {
+        Random random = new Random(UnitTest.RANDOM_SEED);
+        List<Board> games = new ArrayList<>();
+        for (int g = 0; g < SEGMENT_TEST_GAMES; g += 1) {
+            games.add(Match.opening(random.nextInt(SEGMENT_TEST_PLIES),
+                                    random));
+        }
+        File file = File.createTempFile("games", ".archive");
+        file.deleteOnExit();
+        try (GameArchive.Writer writer =
+             new GameArchive.Writer(file.getPath())) {
+            for (int g = 0; g < games.size(); g += 1) {
+                writer.add(games.get(g).moves(), EMPTY, g, "white", "black");
+            }
+        }
+        GameArchive whole = GameArchive.open(file.getPath()),
+            split = GameArchive.open(file.getPath(), SEGMENT_TEST_BYTES);
+        assertEquals(games.size(), split.size());
+        for (int g = 0; g < games.size(); g += 1) {
+            GameArchive.Game game = split.game(g);
+            assertEquals(g, game.seed());
+            assertEquals(whole.game(g).plies(), game.plies());
+            for (int k = 0; k < game.plies(); k += 1) {
+                assertEquals(games.get(g).moves().get(k), game.move(k));
+            }
+        }
+        try {
+            GameArchive.open(file.getPath(), 1);
+            fail("game larger than a segment mapped");
+        } catch (IOException excp) {
+            /* Expected. */
+        }
+    }
+
+    /** Number of games in testSegments. */
+    static final int SEGMENT_TEST_GAMES = 50;
+    /** Bound on the number of moves of the games in testSegments. */
+    static final int SEGMENT_TEST_PLIES = 60;
+    /** Size of the segments in testSegments, in bytes, enough for a few
+     *  games each. */
+    static final int SEGMENT_TEST_BYTES = 1000;
+}
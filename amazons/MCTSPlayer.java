@@ -0,0 +1,652 @@
+package amazons;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import static amazons.Piece.*;
+
+/** A Player that chooses moves by Monte Carlo tree search (UCT).  Each
+ *  iteration descends the tree from the current position, choosing at
+ *  each node the child with the best upper confidence bound, expands
+ *  the node it reaches once it has been visited often enough, scores
+ *  the resulting position, and adds the score to every node on the
+ *  path.  The move played is the most visited child of the root.
+ *
+ *  Leaves are scored by a short random game, played by a Playout
+ *  kernel, cut off after a fixed number of moves and scored by
+ *  territory, which is squashed into a probability of winning.  Games
+ *  played to the end are poor guides in Amazons.  With a cutoff of 0,
+ *  leaves are instead scored by the region-by-region margin of
+ *  Evaluator.  Positions with no contested region are scored exactly
+ *  when Evaluator can count their regions' moves exactly, and otherwise
+ *  by squashing its estimate, midway between winning and losing
+ *  margins.
+ *
+ *  The tree is kept in parallel arrays indexed by node number rather
+ *  than in node objects.  The children of a node form a list linked
+ *  through _next; nodes that are released go onto a free list linked
+ *  the same way, and are reused.  After each move, the subtree under
+ *  the position actually reached is kept for the next search, and the
+ *  rest of the tree is released.  Once an expansion finds no room, the
+ *  tree is marked full, and leaves are scored without being expanded
+ *  until a later search releases nodes.
+ *
+ *  Several Workers may search the one tree at once.  Each has its own
+ *  board, playout kernel, and evaluator; they share only the tree.
+ *  Visit counts and values are updated atomically rather than under a
+ *  lock.  A worker counts its visit to each node on the way down (a
+ *  "virtual loss", since the value it will add is not yet there), which
+ *  makes the node look worse to the others until the worker's result
+ *  arrives, and so spreads the workers over different lines.  A worker
+ *  claims a node to expand by setting its first child to EXPANDING,
+ *  builds the children, and then publishes them all at once by
+ *  setting the first child; only the handing out of node numbers is
+ *  locked.
+ *  @author Ethan Yim
+ */
+class MCTSPlayer extends Player {
+
+    /** Default time allowed per move, in milliseconds. */
+    static final int DEFAULT_TIME = 1000;
+    /** Default number of nodes in the tree. */
+    static final int DEFAULT_CAPACITY = 1 << 20;
+    /** The exploration constant in the upper confidence bound. */
+    static final double EXPLORATION = 0.4;
+    /** A node's children are created once it has this many visits.
+     *  When leaves are scored deterministically (with no playout), a
+     *  leaf is evaluated once, and later visits before it is expanded
+     *  reuse its value. */
+    static final int EXPAND_VISITS = 8;
+    /** Default number of random moves played from each leaf. */
+    static final int DEFAULT_PLAYOUT_DEPTH = 4;
+    /** The margin, in moves, that is worth odds of e to 1. */
+    static final double MARGIN_SCALE = 3.0;
+    /** The territory balance at the end of a playout that is worth odds
+     *  of e to 1. */
+    static final double TERRITORY_SCALE = 5.0;
+    /** The visits a worker adds to each node on its path on the way
+     *  down, before it knows the value.  It adds the rest of its single
+     *  visit on the way back up. */
+    static final int VIRTUAL_LOSS = 1;
+    /** The number of iterations between checks of the clock. */
+    private static final int CLOCK_INTERVAL = 32;
+    /** Values are kept in fixed point, with this value representing a
+     *  certain win. */
+    private static final long VALUE_SCALE = 1 << 16;
+    /** Absence of a node. */
+    private static final int NONE = -1;
+    /** The first child of a node whose children are being created. */
+    private static final int EXPANDING = -2;
+
+    /** A new single-threaded MCTSPlayer with no piece or controller
+     *  (intended to produce a template), allowed MILLIS milliseconds per
+     *  move and playing DEPTH random moves from each leaf. */
+    MCTSPlayer(int millis, int depth) {
+        this(null, null, millis, depth, 1);
+    }
+
+    /** A new MCTSPlayer with no piece or controller (intended to produce
+     *  a template), allowed MILLIS milliseconds per move, playing DEPTH
+     *  random moves from each leaf, and searching with THREADS
+     *  workers. */
+    MCTSPlayer(int millis, int depth, int threads) {
+        this(null, null, millis, depth, threads);
+    }
+
+    /** A new MCTSPlayer playing PIECE under control of CONTROLLER,
+     *  allowed MILLIS milliseconds per move, playing DEPTH random moves
+     *  from each leaf, and searching with THREADS workers. */
+    MCTSPlayer(Piece piece, Controller controller, int millis, int depth,
+               int threads) {
+        super(piece, controller);
+        if (threads < 1) {
+            throw new IllegalArgumentException("need at least one thread");
+        }
+        _millis = millis;
+        _playoutDepth = depth;
+        _threads = threads;
+    }
+
+    @Override
+    Player create(Piece piece, Controller controller) {
+        return new MCTSPlayer(piece, controller, _millis, _playoutDepth,
+                              _threads);
+    }
+
+    @Override
+    String myMove() {
+        Move move = findMove(board());
+        _controller.reportMove(move);
+        return move.toString();
+    }
+
+    /** Return the move to play on BOARD, on which the side to move is
+     *  assumed to have a move, after searching for the allowed time. */
+    Move findMove(Board board) {
+        EngineEvents.Search event = new EngineEvents.Search();
+        event.begin();
+        think(board, _millis);
+        int best = mostVisited(_root);
+        Move result =
+            best == NONE ? board.legalMoves().next() : Move.mv(_move[best]);
+        event.end();
+        if (event.shouldCommit()) {
+            event.engine = "mcts";
+            event.ply = board.numMoves();
+            event.depth = _playoutDepth;
+            event.nodes = iterations();
+            event.move = result.toString();
+            event.commit();
+        }
+        return result;
+    }
+
+    /** Search BOARD, on which the side to move is assumed to have a move,
+     *  for MILLIS milliseconds, and return its best moves, at most LINES
+     *  of them, most visited first.  Each comes with its principal
+     *  variation, the move itself followed by the most visited children
+     *  below it, if any were visited.  All the lines come from the one
+     *  tree, which is kept for later searches as after findMove. */
+    List<Line> analyze(Board board, int lines, int millis) {
+        think(board, millis);
+        List<Integer> children = new ArrayList<>();
+        for (int c = _child.get(_root); c >= 0; c = _next[c]) {
+            children.add(c);
+        }
+        children.sort((a, b) -> Integer.compare(_visits.get(b),
+                                                _visits.get(a)));
+        List<Line> result = new ArrayList<>();
+        for (int c : children.subList(0, Math.min(lines, children.size()))) {
+            List<Move> variation = new ArrayList<>();
+            variation.add(Move.mv(_move[c]));
+            for (int n = mostVisited(c); n != NONE && _visits.get(n) > 0
+                     && variation.size() < MAX_VARIATION;
+                 n = mostVisited(n)) {
+                variation.add(Move.mv(_move[n]));
+            }
+            int visits = _visits.get(c);
+            double value = visits == 0 ? 0.5
+                : (double) _value.get(c) / VALUE_SCALE / visits;
+            result.add(new Line(variation, value, visits));
+        }
+        return result;
+    }
+
+    /** One of the lines found by analyze. */
+    static final class Line {
+
+        /** A line consisting of the moves VARIATION, whose first move is
+         *  estimated to win with probability VALUE for the side making it
+         *  after VISITS visits. */
+        Line(List<Move> variation, double value, int visits) {
+            _variation = variation;
+            _value = value;
+            _visits = visits;
+        }
+
+        /** Return the moves of the line, starting with the move
+         *  analyzed. */
+        List<Move> variation() {
+            return _variation;
+        }
+
+        /** Return the estimated probability that the side making the
+         *  first move of the line wins. */
+        double value() {
+            return _value;
+        }
+
+        /** Return the number of visits behind value(). */
+        int visits() {
+            return _visits;
+        }
+
+        /** The moves of the line. */
+        private final List<Move> _variation;
+        /** The estimated probability of winning. */
+        private final double _value;
+        /** The number of visits. */
+        private final int _visits;
+    }
+
+    /** Search BOARD, on which the side to move is assumed to have a
+     *  move, for MILLIS milliseconds, leaving the results in the tree
+     *  under _root. */
+    private void think(Board board, int millis) {
+        if (_child == null) {
+            allocateTree(_capacity);
+            Random random =
+                new Random(_seed != null ? _seed
+                           : _controller == null ? 0
+                           : _controller.randInt(Integer.MAX_VALUE));
+            _workers = new Worker[_threads];
+            for (int k = 0; k < _threads; k += 1) {
+                _workers[k] = new Worker(random.nextLong());
+            }
+        }
+        reroot(board);
+        search(System.nanoTime() + millis * 1_000_000L);
+    }
+
+    /** Return the most visited child of NODE, or NONE if it has no
+     *  children. */
+    private int mostVisited(int node) {
+        int best = NONE;
+        for (int c = _child.get(node); c >= 0; c = _next[c]) {
+            if (best == NONE || _visits.get(c) > _visits.get(best)) {
+                best = c;
+            }
+        }
+        return best;
+    }
+
+    /** Run all my workers on the tree until DEADLINE (in the terms of
+     *  System.nanoTime), the first in this thread and the others in
+     *  WORKER_THREADS. */
+    private void search(long deadline) {
+        List<Future<?>> running = new ArrayList<>();
+        for (int k = 1; k < _workers.length; k += 1) {
+            Worker worker = _workers[k];
+            running.add(WORKER_THREADS.submit(() -> worker.run(deadline)));
+        }
+        _workers[0].run(deadline);
+        try {
+            for (Future<?> future : running) {
+                future.get();
+            }
+        } catch (InterruptedException excp) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException excp) {
+            throw new IllegalStateException("search failed",
+                                            excp.getCause());
+        }
+    }
+
+    /** Seed my random choices with SEED, rather than with a number from
+     *  my controller.  Has no effect after my first search. */
+    void setSeed(long seed) {
+        _seed = seed;
+    }
+
+    /** Make room for CAPACITY nodes in my tree, rather than
+     *  DEFAULT_CAPACITY.  Has no effect after my first search. */
+    void setCapacity(int capacity) {
+        _capacity = capacity;
+    }
+
+    /** Return the number of iterations made by the last search, by all
+     *  workers together. */
+    int iterations() {
+        int total = 0;
+        for (Worker worker : _workers) {
+            total += worker._iterations;
+        }
+        return total;
+    }
+
+    /** Return the number of nodes now in use in the tree. */
+    int treeSize() {
+        return _used - _freeCount;
+    }
+
+    /** Make the tree's root the node for BOARD, keeping its subtree if it
+     *  is within two moves of the old root, and starting afresh
+     *  otherwise, or if there would be no room left for the root's
+     *  children. */
+    private void reroot(Board board) {
+        int found = NONE;
+        if (_rootBoard != null) {
+            found = find(board);
+        }
+        if (found == NONE) {
+            clear();
+        } else if (found != _root) {
+            release(_root, found);
+            _next[found] = NONE;
+            _root = found;
+            _full = false;
+        }
+        _rootBoard = new Board(board);
+        if (_child.get(_root) == NONE
+            && !_workers[0].expand(_root, _rootBoard) && _full) {
+            clear();
+            _workers[0].expand(_root, _rootBoard);
+        }
+    }
+
+    /** Empty the tree, leaving only a new root. */
+    private void clear() {
+        _used = _freeCount = 0;
+        _free = NONE;
+        _full = false;
+        _root = allocate(0);
+    }
+
+    /** Return the node for BOARD among the root, its children, and its
+     *  grandchildren, or NONE if there is none. */
+    private int find(Board board) {
+        long hash = board.hash();
+        if (_rootBoard.hash() == hash) {
+            return _root;
+        }
+        for (int c = _child.get(_root); c != NONE; c = _next[c]) {
+            Move move = Move.mv(_move[c]);
+            if (_rootBoard.hashAfter(move) == hash) {
+                return c;
+            }
+            if (_child.get(c) == NONE) {
+                continue;
+            }
+            _rootBoard.makeMove(move);
+            for (int g = _child.get(c); g != NONE; g = _next[g]) {
+                if (_rootBoard.hashAfter(Move.mv(_move[g])) == hash) {
+                    _rootBoard.retract();
+                    return g;
+                }
+            }
+            _rootBoard.retract();
+        }
+        return NONE;
+    }
+
+    /** Return the probability of winning corresponding to a lead of X,
+     *  where a lead of SCALE is worth odds of e to 1. */
+    private static double squash(double x, double scale) {
+        return 1.0 / (1.0 + Math.exp(-x / scale));
+    }
+
+    /** Create the arrays for a tree of CAPACITY nodes. */
+    private void allocateTree(int capacity) {
+        _child = new AtomicIntegerArray(capacity);
+        _next = new int[capacity];
+        _move = new int[capacity];
+        _visits = new AtomicIntegerArray(capacity);
+        _value = new AtomicLongArray(capacity);
+    }
+
+    /** Return the first of a list of COUNT new nodes, linked through
+     *  _next, for the moves whose codes are the first COUNT elements of
+     *  CODES, in order.  Return NONE, and mark the tree full, if there
+     *  is no room for them.  The nodes are not visible to other workers
+     *  until the caller links them into the tree. */
+    private synchronized int allocate(int[] codes, int count) {
+        if (count > _child.length() - _used + _freeCount) {
+            _full = true;
+            return NONE;
+        }
+        int last = NONE;
+        for (int k = count - 1; k >= 0; k -= 1) {
+            int c = allocate(codes[k]);
+            _next[c] = last;
+            last = c;
+        }
+        return last;
+    }
+
+    /** Return a new node for the move with code CODE, with no children
+     *  or visits, taking it from the free list if possible.  Assumes
+     *  there is room, and that no worker is running or that I hold the
+     *  lock. */
+    private int allocate(int code) {
+        int n;
+        if (_free != NONE) {
+            n = _free;
+            _free = _next[n];
+            _freeCount -= 1;
+        } else {
+            n = _used;
+            _used += 1;
+        }
+        _child.setPlain(n, NONE);
+        _next[n] = NONE;
+        _move[n] = code;
+        _visits.setPlain(n, 0);
+        _value.setPlain(n, 0);
+        return n;
+    }
+
+    /** Put NODE and its descendants onto the free list, except for KEEP
+     *  and its descendants. */
+    private void release(int node, int keep) {
+        if (node == keep) {
+            return;
+        }
+        for (int c = _child.get(node); c != NONE; ) {
+            int next = _next[c];
+            release(c, keep);
+            c = next;
+        }
+        _next[node] = _free;
+        _free = node;
+        _freeCount += 1;
+    }
+
+    /** One of the searchers of the tree.  Everything a Worker changes
+     *  other than the tree is its own. */
+    private class Worker {
+
+        /** A worker whose random choices start from SEED. */
+        Worker(long seed) {
+            _random = new Random(seed);
+            _playout = new Playout(_random.nextLong());
+        }
+
+        /** Search from the root until DEADLINE (in the terms of
+         *  System.nanoTime). */
+        void run(long deadline) {
+            _board = new Board(_rootBoard);
+            _iterations = 0;
+            do {
+                for (int k = 0; k < CLOCK_INTERVAL; k += 1) {
+                    iterate();
+                }
+                _iterations += CLOCK_INTERVAL;
+            } while (System.nanoTime() < deadline);
+        }
+
+        /** Perform one iteration of the search from the root. */
+        private void iterate() {
+            Board board = _board;
+            int node = _root, depth = 0;
+            _path[0] = node;
+            int visits = _visits.getAndAdd(node, VIRTUAL_LOSS);
+            while (_child.get(node) >= 0) {
+                node = select(node);
+                visits = _visits.getAndAdd(node, VIRTUAL_LOSS);
+                board.makeMove(Move.mv(_move[node]));
+                depth += 1;
+                _path[depth] = node;
+            }
+            double white;
+            if (visits >= EXPAND_VISITS && !_full
+                && _child.compareAndSet(node, NONE, EXPANDING)
+                && expand(node, board)) {
+                node = _child.get(node);
+                _visits.getAndAdd(node, VIRTUAL_LOSS);
+                board.makeMove(Move.mv(_move[node]));
+                depth += 1;
+                _path[depth] = node;
+                white = evaluate(board);
+            } else if (visits > 0 && depth > 0 && _playoutDepth == 0
+                       && _value.get(node) > 0) {
+                white = (double) _value.get(node) / VALUE_SCALE / visits;
+                if (board.turn() == WHITE) {
+                    white = 1.0 - white;
+                }
+            } else {
+                white = evaluate(board);
+            }
+            for (int k = depth; k >= 0; k -= 1) {
+                int n = _path[k];
+                if (VIRTUAL_LOSS != 1) {
+                    _visits.getAndAdd(n, 1 - VIRTUAL_LOSS);
+                }
+                if (k > 0) {
+                    board.retract();
+                    double value =
+                        board.turn() == WHITE ? white : 1.0 - white;
+                    _value.getAndAdd(n, Math.round(value * VALUE_SCALE));
+                }
+            }
+        }
+
+        /** Return the child of NODE with the greatest upper confidence
+         *  bound on its value to the side moving into it.  Unvisited
+         *  children come first. */
+        private int select(int node) {
+            double logVisits = Math.log(_visits.get(node));
+            double bestScore = Double.NEGATIVE_INFINITY;
+            int best = NONE;
+            for (int c = _child.get(node); c != NONE; c = _next[c]) {
+                int visits = _visits.get(c);
+                if (visits == 0) {
+                    return c;
+                }
+                double score = (double) _value.get(c) / VALUE_SCALE / visits
+                    + EXPLORATION * Math.sqrt(logVisits / visits);
+                if (score > bestScore) {
+                    bestScore = score;
+                    best = c;
+                }
+            }
+            return best;
+        }
+
+        /** Create the children of NODE, whose position is BOARD, in
+         *  random order, and link them into the tree.  At the root, only
+         *  one of each set of moves that a symmetry of the position maps
+         *  onto each other gets a child.  Return false, and
+         *  leave NODE with no children, if there are no legal moves or
+         *  no room in the tree for them. */
+        private boolean expand(int node, Board board) {
+            int symmetries = node == _root ? board.symmetries() : 0;
+            int count = 0;
+            for (Iterator<Move> m = board.legalMoves(); m.hasNext(); ) {
+                if (count == _moves.length) {
+                    _child.set(node, NONE);
+                    return false;
+                }
+                Move move = m.next();
+                if (move.leastImage(symmetries)) {
+                    _moves[count] = move.code();
+                    count += 1;
+                }
+            }
+            for (int k = count - 1; k > 0; k -= 1) {
+                int j = _random.nextInt(k + 1);
+                int code = _moves[j];
+                _moves[j] = _moves[k];
+                _moves[k] = code;
+            }
+            int first = count == 0 ? NONE : allocate(_moves, count);
+            _child.set(node, first);
+            return first != NONE;
+        }
+
+        /** Return the probability that White wins from BOARD, as
+         *  estimated by a playout or from its margin. */
+        private double evaluate(Board board) {
+            if (!board.legalMoves().hasNext()) {
+                return board.turn() == WHITE ? 0.0 : 1.0;
+            }
+            if (!board.hasContestedRegion()) {
+                int margin = _evaluator.margin(board);
+                if (board.turn() == BLACK) {
+                    margin += 1;
+                }
+                if (_evaluator.exact()) {
+                    return margin > 0 ? 1.0 : 0.0;
+                }
+                return squash(margin - 0.5, MARGIN_SCALE);
+            }
+            if (_playoutDepth == 0) {
+                return squash(_evaluator.margin(board), MARGIN_SCALE);
+            }
+            _playout.load(board);
+            Piece winner = _playout.play(_playoutDepth);
+            if (winner != EMPTY) {
+                return winner == WHITE ? 1.0 : 0.0;
+            }
+            return squash(_playout.territory(), TERRITORY_SCALE);
+        }
+
+        /** My copy of the position at the root, on which I make and
+         *  retract the moves of each iteration. */
+        private Board _board;
+        /** Plays the random moves from leaves. */
+        private final Playout _playout;
+        /** Estimates the margin at leaves. */
+        private final Evaluator _evaluator =
+            new Evaluator(RegionTablebase.standard());
+        /** Source of the random order of children. */
+        private final Random _random;
+        /** The nodes on the path of the current iteration. */
+        private final int[] _path = new int[DistanceMap.SQUARES + 1];
+        /** Scratch space for the codes of the moves of a node. */
+        private final int[] _moves = new int[MAX_MOVES];
+        /** The number of iterations of the last search. */
+        private int _iterations;
+    }
+
+    /** Threads that run the workers other than the first.  They are
+     *  daemons, so that idle ones do not keep the program alive. */
+    private static final ExecutorService WORKER_THREADS =
+        Executors.newCachedThreadPool(task -> {
+            Thread thread = new Thread(task, "mcts-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+    /** Time allowed per move, in milliseconds. */
+    private final int _millis;
+    /** Number of random moves played from each leaf. */
+    private final int _playoutDepth;
+    /** Number of workers searching at once. */
+    private final int _threads;
+    /** The seed set by setSeed, or null. */
+    private Long _seed;
+    /** Number of nodes in the tree, as set by setCapacity. */
+    private int _capacity = DEFAULT_CAPACITY;
+    /** The workers. */
+    private Worker[] _workers;
+
+    /** First child of each node, or NONE, or EXPANDING. */
+    private AtomicIntegerArray _child;
+    /** Next sibling of each node, or next free node, or NONE. */
+    private int[] _next;
+    /** Code of the move leading to each node. */
+    private int[] _move;
+    /** Number of times each node has been visited, including visits
+     *  whose values have not yet arrived. */
+    private AtomicIntegerArray _visits;
+    /** Total value of each node to the side that moved into it, in units
+     *  of 1/VALUE_SCALE. */
+    private AtomicLongArray _value;
+    /** Number of node numbers ever handed out. */
+    private int _used;
+    /** Head of the free list, or NONE. */
+    private int _free;
+    /** Number of nodes on the free list. */
+    private int _freeCount;
+    /** True once an expansion has found no room in the tree, until
+     *  nodes are released.  Workers then stop expanding leaves. */
+    private volatile boolean _full;
+    /** The root node. */
+    private int _root;
+    /** The position at the root. */
+    private Board _rootBoard;
+
+    /** The longest principal variation reported by analyze. */
+    private static final int MAX_VARIATION = 12;
+
+    /** More than the most legal moves any position has. */
+    private static final int MAX_MOVES = 1 << 14;
+}
@@ -0,0 +1,127 @@
+package amazons;
+
+import org.junit.Test;
+
+import static amazons.Piece.*;
+import static org.junit.Assert.*;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/** JUnit tests of MCTSPlayer.
+ *  @author Ethan Yim
+ */
+public class MCTSPlayerTest {
+
+    /** Tests that the MCTS player, with one or several threads, finds
+     *  wins in small contested regions, where its tree can cover every
+     *  line. */
+    @Test
+    public void testMCTSPlayer() {
+        Random random = new Random(UnitTest.RANDOM_SEED);
+        int tried = 0;
+        while (tried < 5) {
+            Board b = UnitTest.sealedRegion(random, 5 + random.nextInt(3), 2);
+            b.put(BLACK, UnitTest.firstQueen(b));
+            if (!b.hasContestedRegion() || !UnitTest.wins(b)) {
+                continue;
+            }
+            int depth = tried % 2 == 0 ? 0 : MCTSPlayer.DEFAULT_PLAYOUT_DEPTH;
+            MCTSPlayer player =
+                new MCTSPlayer(MCTS_TEST_TIME, depth, 1 + tried % 3);
+            Move move = player.findMove(b);
+            assertTrue(b.isLegal(move));
+            assertFalse(UnitTest.wins(UnitTest.afterMove(b, move)));
+            assertTrue(player.iterations() > 0);
+            tried += 1;
+        }
+    }
+
+    /** Tests that an analysis gives distinct lines, most visited first,
+     *  whose variations are legal sequences of moves. */
+    @Test
+    public void testAnalyze() {
+        Board b = new Board();
+        MCTSPlayer player =
+            new MCTSPlayer(MCTS_TEST_TIME, MCTSPlayer.DEFAULT_PLAYOUT_DEPTH);
+        List<MCTSPlayer.Line> lines = player.analyze(b, 3, MCTS_TEST_TIME);
+        assertEquals(3, lines.size());
+        Set<Move> first = new HashSet<>();
+        for (int k = 0; k < lines.size(); k += 1) {
+            MCTSPlayer.Line line = lines.get(k);
+            if (k > 0) {
+                assertTrue(line.visits() <= lines.get(k - 1).visits());
+            }
+            assertTrue(line.value() >= 0 && line.value() <= 1);
+            assertTrue(first.add(line.variation().get(0)));
+            Board played = new Board(b);
+            for (Move move : line.variation()) {
+                assertTrue(played.isLegal(move));
+                played.makeMove(move);
+            }
+        }
+    }
+
+    /** Tests that an analysis asked for more lines than the search has
+     *  visited moves gives lines for the unvisited moves too, each
+     *  starting with its own move. */
+    @Test
+    public void testAnalyzeUnvisited() {
+        Board b = new Board();
+        MCTSPlayer player = new MCTSPlayer(1, 0);
+        List<MCTSPlayer.Line> lines = player.analyze(b, 3000, 1);
+        assertTrue(lines.size() <= 3000);
+        assertTrue(lines.get(lines.size() - 1).visits() == 0);
+        Set<Move> first = new HashSet<>();
+        for (MCTSPlayer.Line line : lines) {
+            assertFalse(line.variation().isEmpty());
+            assertTrue(first.add(line.variation().get(0)));
+            assertTrue(b.isLegal(line.variation().get(0)));
+            if (line.visits() == 0) {
+                assertEquals(1, line.variation().size());
+                assertEquals(0.5, line.value(), 1e-9);
+            }
+        }
+    }
+
+    /** Tests that a search that fills its tree keeps to the tree's
+     *  capacity, still finds legal moves, and goes on iterating at least
+     *  as fast as a search whose tree has room, since it stops trying to
+     *  expand leaves and reuses their values instead. */
+    @Test
+    public void testFullTree() {
+        Board b = new Board();
+        List<Move> game =
+            UnitTest.randomGame(new Random(UnitTest.RANDOM_SEED));
+        for (Move move : game.subList(0, FULL_TREE_PLIES)) {
+            b.makeMove(move);
+        }
+        MCTSPlayer roomy = new MCTSPlayer(FULL_TREE_TIME, 0);
+        MCTSPlayer full = new MCTSPlayer(FULL_TREE_TIME, 0);
+        roomy.setSeed(UnitTest.RANDOM_SEED);
+        full.setSeed(UnitTest.RANDOM_SEED);
+        full.setCapacity(FULL_TREE_CAPACITY);
+        roomy.findMove(b);
+        Move move = full.findMove(b);
+        assertTrue(b.isLegal(move));
+        assertTrue(full.treeSize() <= FULL_TREE_CAPACITY);
+        assertTrue(full.iterations() >= roomy.iterations());
+        b.makeMove(move);
+        Move reply = full.findMove(b);
+        assertTrue(b.isLegal(reply));
+        assertTrue(full.treeSize() <= FULL_TREE_CAPACITY);
+    }
+
+    /** Time allowed to the MCTS player per move in tests, in
+     *  milliseconds. */
+    static final int MCTS_TEST_TIME = 100;
+    /** The number of moves of a random game played before the position
+     *  searched in testFullTree. */
+    static final int FULL_TREE_PLIES = 30;
+    /** Capacity of the tree in testFullTree. */
+    static final int FULL_TREE_CAPACITY = 1 << 12;
+    /** Time allowed per move in testFullTree, in milliseconds, enough to
+     *  fill a tree of FULL_TREE_CAPACITY nodes many times over. */
+    static final int FULL_TREE_TIME = 500;
+}
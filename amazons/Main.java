@@ -1,5 +1,6 @@
 package amazons;
 
+import java.util.Arrays;
 import java.util.List;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
@@ -15,17 +16,134 @@ import ucb.util.CommandArgs;
  */
 public class Main {
 
-    /** The main program.  ARGS may contain the option --display. */
+    /** Size of the regions covered by --make-tablebase by default. */
+    private static final int DEFAULT_TABLEBASE_SIZE = 8;
+    /** Time per move, in milliseconds, in the self-play games of
+     *  --make-book by default. */
+    private static final int DEFAULT_BOOK_TIME = 200;
+
+    /** The main program.  ARGS may contain the option --display, and
+     *  options that choose and tune the automated player, most of which
+     *  set the system properties read by AI and the classes it uses
+     *  (see autoPlayer for the rest).  Other options build a tablebase,
+     *  opening book, or position database, or run Perft, a Match,
+     *  SelfPlay, or the Validator, instead of a game (see the methods
+     *  below that handle them).  The usage message lists them all. */
     public static void main(String... args) {
 
         CommandArgs options =
-            new CommandArgs("--display --log={0,1} --={0,2}", args);
+            new CommandArgs("--display --log={0,1} --tablebase={0,1} "
+                            + "--make-tablebase={0,1} --book={0,1} "
+                            + "--make-book={0,1} --book-games=(\\d+){0,1} "
+                            + "--book-plies=(\\d+){0,1} "
+                            + "--book-time=(\\d+){0,1} --book-logs={0,1} "
+                            + "--positions={0,1} --make-positions={0,1} "
+                            + "--positions-plies=(\\d+){0,1} "
+                            + "--positions-archives={0,1} "
+                            + "--beam={0,1} --beam-branching=(\\d+){0,1} "
+                            + "--stats --telemetry={0,1} "
+                            + "--perft=(\\d+){0,1} "
+                            + "--perft-threads=([1-9]\\d*){0,1} "
+                            + "--perft-hash=(\\d+){0,1} "
+                            + "--match=(\\d+){0,1} --first={0,1} "
+                            + "--second={0,1} --match-plies=(\\d+){0,1} "
+                            + "--match-seed=(\\d+){0,1} "
+                            + "--match-threads=([1-9]\\d*){0,1} "
+                            + "--sprt={0,1} --self-play=(\\d+){0,1} "
+                            + "--self-play-plies=(\\d+){0,1} "
+                            + "--self-play-seed=(\\d+){0,1} "
+                            + "--self-play-threads=([1-9]\\d*){0,1} "
+                            + "--self-play-log={0,1} "
+                            + "--self-play-archive={0,1} "
+                            + "--validate={0,1} "
+                            + "--validate-threads=([1-9]\\d*){0,1} "
+                            + "--tablebase-size=(\\d+){0,1} "
+                            + "--proof-empties=(\\d+){0,1} "
+                            + "--proof-memory=(\\d+){0,1} "
+                            + "--proof-nodes=(\\d+){0,1} "
+                            + "--mcts --mcts-time=(\\d+){0,1} "
+                            + "--mcts-playout=(\\d+){0,1} "
+                            + "--mcts-threads=([1-9]\\d*){0,1} --={0,2}",
+                            args);
         if (!options.ok()) {
             System.err.println("Usage: java amazons.Main [--display]"
-                               + " [--log=FILE] [INPUT [OUTPUT]]");
+                               + " [--log=FILE] [--tablebase=FILE]"
+                               + " [--book=FILE] [--positions=FILE]"
+                               + " [--beam=PHASES]"
+                               + " [--beam-branching=N] [--stats]"
+                               + " [--telemetry=FILE]"
+                               + " [--proof-empties=N] [--proof-memory=MB]"
+                               + " [--proof-nodes=N] [--mcts]"
+                               + " [--mcts-time=MS] [--mcts-playout=N]"
+                               + " [--mcts-threads=N]"
+                               + " [INPUT [OUTPUT]]");
+            System.err.println("       java amazons.Main"
+                               + " --make-tablebase=FILE"
+                               + " [--tablebase-size=N]");
+            System.err.println("       java amazons.Main"
+                               + " --make-book=FILE [--book-games=N]"
+                               + " [--book-plies=N] [--book-time=MS]"
+                               + " [--book-logs=FILE,...]");
+            System.err.println("       java amazons.Main"
+                               + " --make-positions=FILE"
+                               + " [--positions-plies=N]"
+                               + " --positions-archives=FILE,...");
+            System.err.println("       java amazons.Main --perft=N"
+                               + " [--perft-threads=N] [--perft-hash=MB]");
+            System.err.println("       java amazons.Main --match=N"
+                               + " [--first=SPEC] [--second=SPEC]"
+                               + " [--match-plies=N] [--match-seed=N]"
+                               + " [--match-threads=N] [--sprt=ELO0:ELO1]");
+            System.err.println("       java amazons.Main --self-play=N"
+                               + " [--mcts ...] [--mcts-threads=N]"
+                               + " [--self-play-plies=N]"
+                               + " [--self-play-seed=N]"
+                               + " [--self-play-threads=N]"
+                               + " [--self-play-log=FILE]"
+                               + " [--self-play-archive=FILE]");
+            System.err.println("         (--mcts-threads is 1 by default"
+                               + " here; games run in parallel instead)");
+            System.err.println("       java amazons.Main"
+                               + " --validate=FILE,... [--validate-threads=N]");
+            System.err.println("Other thread counts default to one per"
+                               + " processor.");
             System.exit(1);
         }
 
+        if (options.contains("--make-tablebase")) {
+            makeTablebase(options);
+        }
+        if (options.contains("--perft")) {
+            perft(options);
+        }
+        setProperty(options, "--tablebase", RegionTablebase.FILE_PROPERTY);
+        if (options.contains("--make-book")) {
+            makeBook(options);
+        }
+        setProperty(options, "--book", OpeningBook.FILE_PROPERTY);
+        if (options.contains("--make-positions")) {
+            makePositions(options);
+        }
+        setProperty(options, "--positions", PositionDatabase.FILE_PROPERTY);
+        setProperty(options, "--beam", AI.BEAM_PROPERTY);
+        setProperty(options, "--beam-branching", AI.BEAM_BRANCHING_PROPERTY);
+        setProperty(options, "--proof-empties", AI.PROOF_EMPTIES_PROPERTY);
+        setProperty(options, "--proof-memory", AI.PROOF_MEMORY_PROPERTY);
+        setProperty(options, "--proof-nodes", AI.PROOF_NODES_PROPERTY);
+        setProperty(options, "--telemetry", Telemetry.FILE_PROPERTY);
+        if (options.contains("--stats")) {
+            System.setProperty(AI.STATS_PROPERTY, "true");
+        }
+        if (options.contains("--match")) {
+            match(options);
+        }
+        if (options.contains("--self-play")) {
+            selfPlay(options);
+        }
+        if (options.contains("--validate")) {
+            validate(options);
+        }
+
         List<String> files = options.get("--");
         if (!files.isEmpty()) {
             try {
@@ -54,6 +172,245 @@ public class Main {
 
     }
 
+    /** Set the system property PROPERTY to the value of OPTION in
+     *  OPTIONS, if it is present. */
+    private static void setProperty(CommandArgs options, String option,
+                                    String property) {
+        if (options.contains(option)) {
+            System.setProperty(property, options.getFirst(option));
+        }
+    }
+
+    /** Write the region tablebase requested by OPTIONS, covering
+     *  regions of up to --tablebase-size=N squares, to the file
+     *  --make-tablebase=FILE, and exit. */
+    private static void makeTablebase(CommandArgs options) {
+        int size = DEFAULT_TABLEBASE_SIZE;
+        if (options.contains("--tablebase-size")) {
+            size = Integer.parseInt(options.getFirst("--tablebase-size"));
+        }
+        try {
+            RegionTablebase.generate(size,
+                                     options.getFirst("--make-tablebase"),
+                                     System.err);
+            System.exit(0);
+        } catch (IOException excp) {
+            System.err.printf("Could not write tablebase: %s%n",
+                              excp.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /** Print the number of sequences of legal moves of each length up
+     *  to --perft=N from the initial position, as requested by OPTIONS,
+     *  counted by --perft-threads=N threads (by default, one per
+     *  processor) with a table of --perft-hash=MB megabytes (by default,
+     *  none), and exit. */
+    private static void perft(CommandArgs options) {
+        int threads = Runtime.getRuntime().availableProcessors(),
+            memory = 0;
+        if (options.contains("--perft-threads")) {
+            threads = Integer.parseInt(options.getFirst("--perft-threads"));
+        }
+        if (options.contains("--perft-hash")) {
+            memory = Integer.parseInt(options.getFirst("--perft-hash"));
+        }
+        new Perft(threads, (long) memory << 20)
+            .report(new Board(), Integer.parseInt(options.getFirst("--perft")),
+                    System.out);
+        System.exit(0);
+    }
+
+    /** Play the match requested by OPTIONS, of up to --match=N pairs of
+     *  games between --first=SPEC and --second=SPEC (see Match.player)
+     *  from openings of --match-plies=N random moves seeded by
+     *  --match-seed=N, --match-threads=N pairs at once (by default, one
+     *  per processor), stopping early if --sprt=ELO0:ELO1 is given and
+     *  the SPRT decides, and exit. */
+    private static void match(CommandArgs options) {
+        int threads = Runtime.getRuntime().availableProcessors(),
+            plies = Match.DEFAULT_OPENING_PLIES;
+        long seed = System.nanoTime();
+        if (options.contains("--match-threads")) {
+            threads = Integer.parseInt(options.getFirst("--match-threads"));
+        }
+        if (options.contains("--match-plies")) {
+            plies = Integer.parseInt(options.getFirst("--match-plies"));
+        }
+        if (options.contains("--match-seed")) {
+            seed = Long.parseLong(options.getFirst("--match-seed"));
+        }
+        String first = "ai", second = "ai";
+        if (options.contains("--first")) {
+            first = options.getFirst("--first");
+        }
+        if (options.contains("--second")) {
+            second = options.getFirst("--second");
+        }
+        try {
+            Match match = new Match(Match.player(first),
+                                    Match.player(second), threads, plies);
+            if (options.contains("--sprt")) {
+                String[] bounds = options.getFirst("--sprt").split(":");
+                if (bounds.length != 2) {
+                    throw error("--sprt needs ELO0:ELO1");
+                }
+                match.setSprt(Double.parseDouble(bounds[0]),
+                              Double.parseDouble(bounds[1]));
+            }
+            System.out.printf("seed %d%n", seed);
+            match.play(Integer.parseInt(options.getFirst("--match")), seed,
+                       System.out);
+            System.exit(0);
+        } catch (IllegalArgumentException excp) {
+            System.err.printf("Bad match: %s%n", excp.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /** Check the games in the comma-separated logs and GameArchive
+     *  files --validate=FILES named by OPTIONS, with --validate-threads=N
+     *  threads (by default, one per processor), and exit with status 1
+     *  if any are wrong. */
+    private static void validate(CommandArgs options) {
+        int threads = Runtime.getRuntime().availableProcessors();
+        if (options.contains("--validate-threads")) {
+            threads = Integer.parseInt(options.getFirst("--validate-threads"));
+        }
+        try {
+            Validator.Report report = new Validator(threads).validate(
+                Arrays.asList(options.getFirst("--validate").split(",")));
+            report.print(System.out);
+            System.exit(report.ok() ? 0 : 1);
+        } catch (IOException excp) {
+            System.err.printf("Could not read games: %s%n",
+                              excp.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /** Play the self-play games requested by OPTIONS, --self-play=N
+     *  games of the automated player against itself from openings of
+     *  --self-play-plies=N random moves seeded by --self-play-seed=N,
+     *  --self-play-threads=N at once (by default, one per processor),
+     *  writing them to --self-play-log=FILE and the GameArchive
+     *  --self-play-archive=FILE if given, and exit. */
+    private static void selfPlay(CommandArgs options) {
+        int threads = Runtime.getRuntime().availableProcessors(),
+            plies = Match.DEFAULT_OPENING_PLIES;
+        long seed = System.nanoTime();
+        if (options.contains("--self-play-threads")) {
+            threads =
+                Integer.parseInt(options.getFirst("--self-play-threads"));
+        }
+        if (options.contains("--self-play-plies")) {
+            plies = Integer.parseInt(options.getFirst("--self-play-plies"));
+        }
+        if (options.contains("--self-play-seed")) {
+            seed = Long.parseLong(options.getFirst("--self-play-seed"));
+        }
+        Player player = autoPlayer(options, 1);
+        SelfPlay games = new SelfPlay(player, player, threads, plies);
+        PrintStream log = null;
+        GameArchive.Writer archive = null;
+        try {
+            if (options.contains("--self-play-log")) {
+                log = new PrintStream(options.getFirst("--self-play-log"));
+                games.setLog(log);
+            }
+            if (options.contains("--self-play-archive")) {
+                archive = new GameArchive.Writer(
+                    options.getFirst("--self-play-archive"));
+                games.setArchive(archive);
+            }
+        } catch (IOException excp) {
+            System.err.printf("Could not open log file: %s%n",
+                              excp.getMessage());
+            System.exit(1);
+        }
+        System.out.printf("seed %d%n", seed);
+        games.play(Integer.parseInt(options.getFirst("--self-play")), seed,
+                   System.out);
+        if (log != null) {
+            log.close();
+        }
+        if (archive != null) {
+            try {
+                archive.close();
+            } catch (IOException excp) {
+                System.err.printf("Could not write archive: %s%n",
+                                  excp.getMessage());
+                System.exit(1);
+            }
+        }
+        System.exit(0);
+    }
+
+    /** Write the opening book requested by OPTIONS to --make-book=FILE,
+     *  holding the first --book-plies=N moves of --book-games=N
+     *  self-play games, allowed --book-time=MS milliseconds per move,
+     *  and of the games in the comma-separated logs --book-logs=FILES,
+     *  and exit. */
+    private static void makeBook(CommandArgs options) {
+        int plies = OpeningBook.DEFAULT_PLIES, games = 0,
+            millis = DEFAULT_BOOK_TIME;
+        if (options.contains("--book-plies")) {
+            plies = Integer.parseInt(options.getFirst("--book-plies"));
+        }
+        if (options.contains("--book-games")) {
+            games = Integer.parseInt(options.getFirst("--book-games"));
+        }
+        if (options.contains("--book-time")) {
+            millis = Integer.parseInt(options.getFirst("--book-time"));
+        }
+        OpeningBook.Builder builder = new OpeningBook.Builder(plies);
+        try {
+            if (options.contains("--book-logs")) {
+                for (String log : options.getFirst("--book-logs").split(",")) {
+                    System.err.printf("%s: %d games%n", log,
+                                      builder.addLog(log));
+                }
+            }
+            builder.selfPlay(games, millis, System.nanoTime(), System.err);
+            builder.write(options.getFirst("--make-book"));
+            System.exit(0);
+        } catch (IOException excp) {
+            System.err.printf("Could not make opening book: %s%n",
+                              excp.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /** Write the position database requested by OPTIONS to
+     *  --make-positions=FILE, holding the first --positions-plies=N
+     *  moves of the games in the comma-separated GameArchive files
+     *  --positions-archives=FILES, and exit. */
+    private static void makePositions(CommandArgs options) {
+        int plies = PositionDatabase.DEFAULT_PLIES;
+        if (options.contains("--positions-plies")) {
+            plies = Integer.parseInt(options.getFirst("--positions-plies"));
+        }
+        PositionDatabase.Builder builder =
+            new PositionDatabase.Builder(plies);
+        try {
+            if (options.contains("--positions-archives")) {
+                for (String file
+                         : options.getFirst("--positions-archives")
+                         .split(",")) {
+                    System.err.printf("%s: %d games%n", file,
+                                      builder.addArchive(
+                                          GameArchive.open(file)));
+                }
+            }
+            builder.write(options.getFirst("--make-positions"));
+            System.exit(0);
+        } catch (IOException excp) {
+            System.err.printf("Could not make position database: %s%n",
+                              excp.getMessage());
+            System.exit(1);
+        }
+    }
+
     /** Return an appropriate Controller as indicated by OPTIONS. */
     private static Controller getController(CommandArgs options) {
         Player manualPlayer;
@@ -83,6 +440,32 @@ public class Main {
             }
         }
 
-        return new Controller(view, log, reporter, manualPlayer, new AI());
+        int threads = Runtime.getRuntime().availableProcessors();
+        return new Controller(view, log, reporter, manualPlayer,
+                              autoPlayer(options, threads));
+    }
+
+    /** Return a template for the automated player indicated by
+     *  OPTIONS: an AI, or with --mcts, an MCTSPlayer allowed
+     *  --mcts-time=MS milliseconds per move, playing --mcts-playout=N
+     *  random moves from each leaf, and searching with --mcts-threads=N
+     *  workers (by default, THREADS). */
+    private static Player autoPlayer(CommandArgs options, int threads) {
+        if (options.contains("--mcts")) {
+            int millis = MCTSPlayer.DEFAULT_TIME,
+                depth = MCTSPlayer.DEFAULT_PLAYOUT_DEPTH;
+            if (options.contains("--mcts-time")) {
+                millis = Integer.parseInt(options.getFirst("--mcts-time"));
+            }
+            if (options.contains("--mcts-playout")) {
+                depth = Integer.parseInt(options.getFirst("--mcts-playout"));
+            }
+            if (options.contains("--mcts-threads")) {
+                threads = Integer.parseInt(options.getFirst("--mcts-threads"));
+            }
+            return new MCTSPlayer(millis, depth, threads);
+        } else {
+            return new AI();
+        }
     }
 }
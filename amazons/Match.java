@@ -0,0 +1,305 @@
+package amazons;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static amazons.Piece.*;
+import static amazons.Utils.error;
+
+/** Plays a match between two automated players, to tell whether one is
+ *  stronger than the other.
+ *
+ *  Games are played in pairs from the same opening, made of a few random
+ *  moves, with each player taking each side once, so that a lopsided
+ *  opening favours neither.  Each game is played by its own Controller,
+ *  with a NullView and a NullReporter, and pairs are played in parallel.
+ *  After each pair, the result so far is reported as a difference in Elo
+ *  rating with a 95% confidence interval, estimated from the scores of
+ *  the pairs.  Optionally, the match stops as soon as a sequential
+ *  probability ratio test (SPRT) decides between two hypotheses about
+ *  that difference.
+ *  @author Ethan Yim
+ */
+class Match {
+
+    /** Random moves in each opening by default. */
+    static final int DEFAULT_OPENING_PLIES = 2;
+    /** Chances of the SPRT accepting the better hypothesis when the
+     *  worse one is true, and the worse when the better one is. */
+    static final double SPRT_ALPHA = 0.05, SPRT_BETA = 0.05;
+    /** Pairs added to each count of pairs when estimating the variance
+     *  of their scores and the difference in rating. */
+    private static final double PRIOR = 0.5;
+    /** Games in a pair. */
+    private static final int GAMES_PER_PAIR = 2;
+    /** The normal deviate of a two-sided 95% confidence interval. */
+    private static final double Z95 = 1.96;
+    /** Elo points for a factor of 10 in the odds of winning. */
+    private static final double ELO_SCALE = 400;
+
+    /** A match between players made from the templates FIRST and SECOND,
+     *  playing THREADS games at once, from openings of PLIES random
+     *  moves. */
+    Match(Player first, Player second, int threads, int plies) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("need at least one thread");
+        }
+        _first = first;
+        _second = second;
+        _threads = threads;
+        _plies = plies;
+    }
+
+    /** Stop the match once the SPRT decides between the hypotheses that
+     *  the first player is ELO0 and ELO1 points stronger than the
+     *  second, with error rates SPRT_ALPHA and SPRT_BETA. */
+    void setSprt(double elo0, double elo1) {
+        if (elo0 >= elo1) {
+            throw error("SPRT bounds must increase");
+        }
+        _sprt = true;
+        _elo0 = elo0;
+        _elo1 = elo1;
+    }
+
+    /** Play up to PAIRS pairs of games, with openings and controllers
+     *  seeded from SEED, reporting progress on OUT, and return the
+     *  result. */
+    Score play(int pairs, long seed, PrintStream out) {
+        ExecutorService threads = Executors.newFixedThreadPool(_threads);
+        CompletionService<Integer> results =
+            new ExecutorCompletionService<>(threads);
+        try {
+            for (int k = 0; k < pairs; k += 1) {
+                long pairSeed = seed + k;
+                results.submit(() -> pair(pairSeed));
+            }
+            Score score = new Score();
+            for (int k = 0; k < pairs; k += 1) {
+                score.add(results.take().get());
+                out.printf("%5d games: %d-%d, %+.1f +/- %.1f Elo",
+                           GAMES_PER_PAIR * score.pairs(), score.wins(),
+                           score.losses(), score.elo(), score.error());
+                if (!_sprt) {
+                    out.println();
+                    continue;
+                }
+                out.printf(", LLR %.2f [%.2f, %.2f]%n",
+                           score.llr(_elo0, _elo1), lowerBound(),
+                           upperBound());
+                if (score.llr(_elo0, _elo1) >= upperBound()) {
+                    out.printf("SPRT: accept Elo >= %.1f%n", _elo1);
+                    break;
+                } else if (score.llr(_elo0, _elo1) <= lowerBound()) {
+                    out.printf("SPRT: accept Elo <= %.1f%n", _elo0);
+                    break;
+                }
+            }
+            return score;
+        } catch (InterruptedException excp) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("match interrupted");
+        } catch (ExecutionException excp) {
+            throw new IllegalStateException("match failed", excp.getCause());
+        } finally {
+            threads.shutdownNow();
+        }
+    }
+
+    /** Play the pair of games from the opening given by SEED, and return
+     *  the number the first player wins. */
+    private int pair(long seed) {
+        Board opening = opening(_plies, new Random(seed));
+        int wins = 0;
+        for (Piece side : new Piece[] { WHITE, BLACK }) {
+            Controller controller =
+                new Controller(new NullView(), null, new NullReporter(),
+                               _first, _first);
+            controller.setSeed(seed);
+            Piece winner = side == WHITE
+                ? controller.playGame(opening, _first, _second)
+                : controller.playGame(opening, _second, _first);
+            if (winner == side) {
+                wins += 1;
+            }
+        }
+        return wins;
+    }
+
+    /** Return an opening of PLIES random moves (fewer if the game ends
+     *  first) chosen with RANDOM. */
+    static Board opening(int plies, Random random) {
+        Board result = new Board();
+        List<Move> moves = new ArrayList<>();
+        for (int k = 0; k < plies; k += 1) {
+            moves.clear();
+            result.legalMoves().forEachRemaining(moves::add);
+            if (moves.isEmpty()) {
+                break;
+            }
+            result.makeMove(moves.get(random.nextInt(moves.size())));
+        }
+        return result;
+    }
+
+    /** Return the log-likelihood ratio at which the SPRT accepts the
+     *  lower hypothesis. */
+    private static double lowerBound() {
+        return Math.log(SPRT_BETA / (1 - SPRT_ALPHA));
+    }
+
+    /** Return the log-likelihood ratio at which the SPRT accepts the
+     *  upper hypothesis. */
+    private static double upperBound() {
+        return Math.log((1 - SPRT_BETA) / SPRT_ALPHA);
+    }
+
+    /** Return a template for the automated player described by SPEC:
+     *  "ai", or "ai:PHASES" for an AI with the beam PHASES (in the form
+     *  described for AI.BEAM_PROPERTY, and empty for no beam), or "mcts",
+     *  optionally followed by ":MS", ":MS:DEPTH" or ":MS:DEPTH:THREADS",
+     *  for an MCTSPlayer. */
+    static Player player(String spec) {
+        if (spec.equals("ai")) {
+            return new AI();
+        } else if (spec.startsWith("ai:")) {
+            return new AI(spec.substring("ai:".length()));
+        } else if (!spec.equals("mcts") && !spec.startsWith("mcts:")) {
+            throw error("unknown player: %s", spec);
+        }
+        String[] fields = spec.split(":");
+        int[] values = { MCTSPlayer.DEFAULT_TIME,
+                         MCTSPlayer.DEFAULT_PLAYOUT_DEPTH, 1 };
+        if (fields.length > values.length + 1) {
+            throw error("bad player: %s", spec);
+        }
+        try {
+            for (int k = 1; k < fields.length; k += 1) {
+                values[k - 1] = Integer.parseInt(fields[k]);
+            }
+        } catch (NumberFormatException excp) {
+            throw error("bad player: %s", spec);
+        }
+        return new MCTSPlayer(values[0], values[1], values[2]);
+    }
+
+    /** Return the rating difference, in Elo points, that gives an
+     *  expected SCORE per game. */
+    static double elo(double score) {
+        return -ELO_SCALE * Math.log10(1 / score - 1);
+    }
+
+    /** Return the expected score per game of a player ELO points
+     *  stronger than its opponent. */
+    static double expectedScore(double elo) {
+        return 1 / (1 + Math.pow(10, -elo / ELO_SCALE));
+    }
+
+    /** The result of a match so far, from the first player's point of
+     *  view, counted in pairs of games. */
+    static final class Score {
+
+        /** Record a pair of which the first player won WINS games. */
+        void add(int wins) {
+            _counts[wins] += 1;
+        }
+
+        /** Return the number of pairs played. */
+        int pairs() {
+            return _counts[0] + _counts[1] + _counts[2];
+        }
+
+        /** Return the number of games the first player won. */
+        int wins() {
+            return _counts[1] + 2 * _counts[2];
+        }
+
+        /** Return the number of games the first player lost. */
+        int losses() {
+            return _counts[1] + 2 * _counts[0];
+        }
+
+        /** Return the first player's mean score per game. */
+        double score() {
+            return (double) wins() / (GAMES_PER_PAIR * pairs());
+        }
+
+        /** Return the variance of the first player's score per game,
+         *  averaged over a pair.  Each kind of pair is counted as if it
+         *  had been played PRIOR more times, so that the variance is
+         *  not 0 while all pairs have had the same score. */
+        double variance() {
+            double mean = priorScore(), sum = 0;
+            for (int wins = 0; wins < _counts.length; wins += 1) {
+                double d = (double) wins / GAMES_PER_PAIR - mean;
+                sum += (_counts[wins] + PRIOR) * d * d;
+            }
+            return sum / priorPairs();
+        }
+
+        /** Return the estimated difference in rating, from the score with
+         *  pairs counted as for variance(), so that it is finite even
+         *  while one player has won every game. */
+        double elo() {
+            return Match.elo(priorScore());
+        }
+
+        /** Return half the width of the 95% confidence interval of
+         *  elo(): that of the score, scaled by the slope of Match.elo
+         *  there. */
+        double error() {
+            double score = priorScore();
+            double margin = Z95 * Math.sqrt(variance() / priorPairs());
+            return margin * ELO_SCALE
+                / (Math.log(10) * score * (1 - score));
+        }
+
+        /** Return the number of pairs played plus PRIOR of each kind. */
+        private double priorPairs() {
+            return pairs() + PRIOR * _counts.length;
+        }
+
+        /** Return the first player's mean score per game, counting PRIOR
+         *  more pairs of each kind, which is strictly between 0 and 1. */
+        private double priorScore() {
+            double wins = wins();
+            for (int k = 0; k < _counts.length; k += 1) {
+                wins += PRIOR * k;
+            }
+            return wins / (GAMES_PER_PAIR * priorPairs());
+        }
+
+        /** Return the log-likelihood ratio of the hypotheses that the
+         *  difference in rating is ELO1 and that it is ELO0, using the
+         *  normal approximation to the distribution of the scores of
+         *  pairs. */
+        double llr(double elo0, double elo1) {
+            double variance = variance();
+            double s0 = expectedScore(elo0), s1 = expectedScore(elo1);
+            return pairs() * (s1 - s0) * (2 * score() - s0 - s1)
+                / (2 * variance);
+        }
+
+        /** _counts[k] is the number of pairs of which the first player
+         *  won k games. */
+        private final int[] _counts = new int[GAMES_PER_PAIR + 1];
+    }
+
+    /** Templates for the two players. */
+    private final Player _first, _second;
+    /** Number of games played at once. */
+    private final int _threads;
+    /** Random moves in each opening. */
+    private final int _plies;
+    /** True iff the SPRT may stop the match. */
+    private boolean _sprt;
+    /** The hypotheses of the SPRT. */
+    private double _elo0, _elo1;
+}
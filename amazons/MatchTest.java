@@ -0,0 +1,70 @@
+package amazons;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+import java.io.OutputStream;
+import java.io.PrintStream;
+
+/** JUnit tests of Match and its players.
+ *  @author Ethan Yim
+ */
+public class MatchTest {
+
+    /** Tests the statistics of a match, and that a short match between
+     *  quick players is played to the end. */
+    @Test
+    public void testMatch() {
+        assertEquals(0, Match.elo(0.5), 1e-9);
+        assertEquals(0.75, Match.expectedScore(Match.elo(0.75)), 1e-9);
+        Match.Score score = new Match.Score();
+        score.add(2);
+        score.add(1);
+        score.add(1);
+        score.add(0);
+        assertEquals(4, score.wins());
+        assertEquals(4, score.losses());
+        assertEquals(0, score.elo(), 1e-9);
+        assertEquals(0.75 / 5.5, score.variance(), 1e-9);
+        assertEquals(0, score.llr(-10, 10), 1e-9);
+        assertTrue(score.llr(0, 10) < 0);
+        score.add(2);
+        assertTrue(score.elo() > 0 && score.error() > 0);
+        assertTrue(score.llr(0, 10) > 0);
+
+        Player quick =
+            Match.player("mcts:" + UnitTest.MATCH_TEST_TIME + ":4:1");
+        Match match = new Match(quick, quick, 2,
+                                Match.DEFAULT_OPENING_PLIES);
+        Match.Score result =
+            match.play(2, UnitTest.RANDOM_SEED,
+                       new PrintStream(OutputStream.nullOutputStream()));
+        assertEquals(2, result.pairs());
+        assertEquals(4, result.wins() + result.losses());
+        try {
+            Match.player("mcts:fast");
+            fail("accepted a bad player");
+        } catch (IllegalArgumentException excp) {
+            /* Expected. */
+        }
+    }
+
+    /** Tests that the estimated difference in rating and its error are
+     *  finite before both players have won a game. */
+    @Test
+    public void testOneSidedScore() {
+        Match.Score none = new Match.Score();
+        assertEquals(0, none.elo(), 1e-9);
+        assertTrue(Double.isFinite(none.error()));
+        for (int wins = 0; wins <= 2; wins += 2) {
+            Match.Score score = new Match.Score();
+            for (int k = 0; k < 3; k += 1) {
+                score.add(wins);
+                assertTrue(Double.isFinite(score.elo()));
+                assertTrue(Double.isFinite(score.error()));
+                assertTrue(score.error() > 0);
+                assertTrue(wins == 0 ? score.elo() < 0 : score.elo() > 0);
+            }
+        }
+    }
+}
@@ -1,10 +1,11 @@
 package amazons;
 
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.regex.Pattern;
-import java.util.regex.Matcher;
 
 import static amazons.Square.sq;
 import static amazons.Square.SQ;
+import static amazons.Utils.error;
 
 /** A move in the game of Amazons. As for Squares, Moves are immutable
  *  and unique: there is only one move object for each possible move
@@ -17,7 +18,8 @@ final class Move {
     /** The syntax for a move, using either the forms FROM-TO(SPEAR) or
      *  FROM TO SPEAR.  Either groups 1-3 or 4-6 in a match from this pattern
      *  contain FROM, TO, and SPEAR (the other 3 groups are null in each
-     *  case. */
+     *  case.  Moves are parsed by Notation, which accepts exactly the
+     *  strings this pattern matches. */
     static final Pattern MOVE_PATTERN =
         Pattern.compile(String.format("%s-%s\\(%s\\)|%s\\s+%s\\s+%s",
                                       SQ, SQ, SQ, SQ, SQ, SQ));
@@ -37,58 +39,177 @@ final class Move {
         return _spear;
     }
 
-    /** Return the unique Move FROM-TO(SPEAR). */
+    /** Return a compact code for me, for use where Move objects would
+     *  take too much space: the indices of my from, to, and spear squares
+     *  in successive 7-bit fields, 21 bits in all, from at the top. */
+    int code() {
+        return (_from.index() << (2 * CODE_BITS))
+            | (_to.index() << CODE_BITS) | _spear.index();
+    }
+
+    /** Return the unique Move FROM-TO(SPEAR), whose piece move and
+     *  spear throw must be queen moves.  Safe to call from any thread. */
     static Move mv(Square from, Square to, Square spear) {
-        if (MOVES[from.index()][to.index()][spear.index()] == null) {
-            MOVES[from.index()][to.index()][spear.index()] =
-                new Move(from, to, spear);
+        int k = slot(from.index(), to.index(), spear.index());
+        if (k < 0) {
+            throw error("not a queen move: %s-%s(%s)", from, to, spear);
         }
-        return MOVES[from.index()][to.index()][spear.index()];
+        Move result = MOVES.get(k);
+        if (result == null) {
+            Move created = new Move(from, to, spear);
+            result = MOVES.compareAndExchange(k, null, created);
+            if (result == null) {
+                result = created;
+            }
+        }
+        return result;
     }
 
-    /** Return the Move denoted by STR, if STR denotes a move with
-     *  valid syntax in which the piece move and spear throw are proper
-     *  queen moves, and null otherwise. */
-    static Move mv(String str) {
-        _moveMatcher.reset(str);
-        if (_moveMatcher.matches()) {
-            int k = _moveMatcher.group(1) != null ? 1 : 4;
-            Square from = sq(_moveMatcher.group(k)),
-                to = sq(_moveMatcher.group(k + 1)),
-                spear = sq(_moveMatcher.group(k + 2));
-            if (from.isQueenMove(to) && to.isQueenMove(spear)) {
-                return mv(from, to, spear);
+    /** Return the move whose code() is CODE. */
+    static Move mv(int code) {
+        return mv(sq(code >>> (2 * CODE_BITS)),
+                  sq((code >>> CODE_BITS) & CODE_MASK), sq(code & CODE_MASK));
+    }
+
+    /** Return my image under symmetry SYM of the board (see
+     *  Square.transform). */
+    Move transform(int sym) {
+        return mv(_from.transform(sym), _to.transform(sym),
+                  _spear.transform(sym));
+    }
+
+    /** Return true iff my code is no greater than that of my image under
+     *  each of the symmetries in SYMMETRIES, a bit set in the form
+     *  returned by Board.symmetries().  Among the moves that a symmetry
+     *  of the position maps onto each other, exactly one passes. */
+    boolean leastImage(int symmetries) {
+        for (int sym = 1; sym < Square.SYMMETRIES; sym += 1) {
+            if ((symmetries & (1 << sym)) != 0
+                && transform(sym).code() < code()) {
+                return false;
             }
         }
-        return null;
+        return true;
+    }
+
+    /** Return the Move denoted by STR, if STR denotes a move with
+     *  valid syntax in which the piece move and spear throw are proper
+     *  queen moves, and null otherwise.  Safe to call from any thread. */
+    static Move mv(CharSequence str) {
+        return validMove(Notation.moveCode(str, 0, str.length()));
+    }
+
+    /** Return the Move denoted by bytes START .. END-1 of BYTES, which
+     *  hold ASCII text, as for mv(CharSequence). */
+    static Move mv(byte[] bytes, int start, int end) {
+        return validMove(Notation.moveCode(bytes, start, end));
     }
 
     /** Return true iff STR has the right format for a Move, ignoring whether
      *  its piece-move and spear-throw are valid queen moves. */
-    static boolean isGrammaticalMove(String str) {
-        _moveMatcher.reset(str);
-        return _moveMatcher.matches();
+    static boolean isGrammaticalMove(CharSequence str) {
+        return Notation.moveCode(str, 0, str.length()) >= 0;
     }
 
+    /** Return the move whose code() is CODE if CODE >= 0 and its piece
+     *  move and spear throw are queen moves, and otherwise null. */
+    static Move validMove(int code) {
+        if (code < 0) {
+            return null;
+        }
+        int from = code >>> (2 * CODE_BITS),
+            to = (code >>> CODE_BITS) & CODE_MASK, spear = code & CODE_MASK;
+        if (slot(from, to, spear) < 0) {
+            return null;
+        }
+        return mv(sq(from), sq(to), sq(spear));
+    }
+
+    /** Return the position in MOVES of the move between the squares with
+     *  indices FROM, TO and SPEAR, or -1 if its piece move or spear throw
+     *  is not a queen move. */
+    private static int slot(int from, int to, int spear) {
+        if (from >= SQUARES || to >= SQUARES || spear >= SQUARES) {
+            return -1;
+        }
+        int start = PAIR_START[from * SQUARES + to],
+            rank = SPEAR_RANK[to * SQUARES + spear];
+        return start < 0 || rank < 0 ? -1 : start + rank;
+    }
+
+    /** Return my printed form, FROM-TO(SPEAR), which is built the first
+     *  time it is asked for.  Threads racing to build it each build an
+     *  equal, immutable String, so any of them may be kept. */
     @Override
     public String toString() {
-        return _str;
+        String result = _str;
+        if (result == null) {
+            result = _from + "-" + _to + "(" + _spear + ")";
+            _str = result;
+        }
+        return result;
     }
 
     /** Construct the Move FROM-TO(SPEAR). */
     private Move(Square from, Square to, Square spear) {
         _from = from; _to = to; _spear = spear;
-        _str = String.format("%s-%s(%s)", from, to, spear);
     }
 
-    /** The cache of all Moves created. */
-    private static final Move[][][] MOVES = new Move[100][100][100];
+    /** The number of bits used for each square in code(). */
+    static final int CODE_BITS = 7;
+
+    /** Mask selecting one square from code(). */
+    private static final int CODE_MASK = (1 << CODE_BITS) - 1;
+
+    /** The number of squares. */
+    private static final int SQUARES = Board.SIZE * Board.SIZE;
+
+    /** For squares with indices FROM and TO that are a queen move apart,
+     *  PAIR_START[FROM * SQUARES + TO] is the position in MOVES of the
+     *  first of the moves FROM-TO(...); for other pairs, -1. */
+    private static final int[] PAIR_START = new int[SQUARES * SQUARES];
+
+    /** For squares with indices TO and SPEAR that are a queen move
+     *  apart, SPEAR_RANK[TO * SQUARES + SPEAR] is the number of squares
+     *  a queen move from TO with smaller indices than SPEAR; for other
+     *  pairs, -1. */
+    private static final byte[] SPEAR_RANK = new byte[SQUARES * SQUARES];
+
+    /** The cache of all Moves created, with a slot for each move whose
+     *  piece move and spear throw are queen moves (see slot).  Moves are
+     *  created as they are first asked for, and published with a
+     *  compare-and-set, so that all threads see the same Move. */
+    private static final AtomicReferenceArray<Move> MOVES;
+
+    static {
+        int[] reach = new int[SQUARES];
+        for (int to = 0; to < SQUARES; to += 1) {
+            for (int spear = 0; spear < SQUARES; spear += 1) {
+                if (sq(to).isQueenMove(sq(spear))) {
+                    SPEAR_RANK[to * SQUARES + spear] = (byte) reach[to];
+                    reach[to] += 1;
+                } else {
+                    SPEAR_RANK[to * SQUARES + spear] = -1;
+                }
+            }
+        }
+        int size = 0;
+        for (int from = 0; from < SQUARES; from += 1) {
+            for (int to = 0; to < SQUARES; to += 1) {
+                if (SPEAR_RANK[from * SQUARES + to] >= 0) {
+                    PAIR_START[from * SQUARES + to] = size;
+                    size += reach[to];
+                } else {
+                    PAIR_START[from * SQUARES + to] = -1;
+                }
+            }
+        }
+        MOVES = new AtomicReferenceArray<>(size);
+    }
 
     /** The components of a Move. */
     private final Square _from, _to, _spear;
-    /** The printed form of a Move. */
+    /** The printed form of a Move, or null until it is first needed. */
     private String _str;
-    /**  A utility Matcher for moves, using MOVE_PATTERN. */
-    private static Matcher _moveMatcher = MOVE_PATTERN.matcher("");
 }
 
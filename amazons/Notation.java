@@ -0,0 +1,153 @@
+package amazons;
+
+/** Parsing of the text forms of squares (e.g., a4 or j10) and of moves
+ *  (FROM-TO(SPEAR) or FROM TO SPEAR, with any whitespace between the
+ *  squares of the second form), as described by Square.SQ and
+ *  Move.MOVE_PATTERN.
+ *
+ *  The parsers read the text in place, from a CharSequence or from a
+ *  range of a byte array holding ASCII, and return the indices of
+ *  squares or the codes of moves rather than objects.  They keep no
+ *  state and allocate nothing, so that any number of threads may use
+ *  them at once.
+ *  @author Ethan Yim
+ */
+final class Notation {
+
+    /** Not instantiable. */
+    private Notation() {
+    }
+
+    /** Return the index of the square denoted by all of characters
+     *  START .. END-1 of TEXT, or -1 if they do not denote a square. */
+    static int squareIndex(CharSequence text, int start, int end) {
+        return wholeSquare(text, start, end);
+    }
+
+    /** Return the index of the square denoted by all of bytes
+     *  START .. END-1 of TEXT, or -1 if they do not denote a square. */
+    static int squareIndex(byte[] text, int start, int end) {
+        return wholeSquare(text, start, end);
+    }
+
+    /** Return the Move.code() of the move denoted by all of characters
+     *  START .. END-1 of TEXT, or -1 if they do not have the syntax of a
+     *  move.  Whether the squares are a queen move apart is not
+     *  checked. */
+    static int moveCode(CharSequence text, int start, int end) {
+        return move(text, start, end);
+    }
+
+    /** Return the Move.code() of the move denoted by all of bytes
+     *  START .. END-1 of TEXT, or -1 if they do not have the syntax of a
+     *  move.  Whether the squares are a queen move apart is not
+     *  checked. */
+    static int moveCode(byte[] text, int start, int end) {
+        return move(text, start, end);
+    }
+
+    /** Bits used for a square's index in the results of square. */
+    private static final int INDEX_BITS = Move.CODE_BITS;
+    /** Mask selecting a square's index from the results of square. */
+    private static final int INDEX_MASK = (1 << INDEX_BITS) - 1;
+
+    /** Return the index of the square denoted by all of positions
+     *  START .. END-1 of TEXT (a CharSequence or byte[]), or -1. */
+    private static int wholeSquare(Object text, int start, int end) {
+        int sq = square(text, start, end);
+        if (sq < 0 || sq >>> INDEX_BITS != end) {
+            return -1;
+        }
+        return sq & INDEX_MASK;
+    }
+
+    /** Return the code of the move denoted by all of positions
+     *  START .. END-1 of TEXT (a CharSequence or byte[]), or -1. */
+    private static int move(Object text, int start, int end) {
+        int from = square(text, start, end);
+        if (from < 0) {
+            return -1;
+        }
+        int k = from >>> INDEX_BITS;
+        int to, spear;
+        if (k < end && charAt(text, k) == '-') {
+            to = square(text, k + 1, end);
+            if (to < 0) {
+                return -1;
+            }
+            k = to >>> INDEX_BITS;
+            if (k >= end || charAt(text, k) != '(') {
+                return -1;
+            }
+            spear = square(text, k + 1, end);
+            if (spear < 0) {
+                return -1;
+            }
+            k = spear >>> INDEX_BITS;
+            if (k + 1 != end || charAt(text, k) != ')') {
+                return -1;
+            }
+        } else {
+            k = skipSpace(text, k, end);
+            to = k == from >>> INDEX_BITS ? -1 : square(text, k, end);
+            if (to < 0) {
+                return -1;
+            }
+            k = skipSpace(text, to >>> INDEX_BITS, end);
+            spear = k == to >>> INDEX_BITS ? -1 : square(text, k, end);
+            if (spear < 0 || spear >>> INDEX_BITS != end) {
+                return -1;
+            }
+        }
+        return ((from & INDEX_MASK) << (2 * Move.CODE_BITS))
+            | ((to & INDEX_MASK) << Move.CODE_BITS) | (spear & INDEX_MASK);
+    }
+
+    /** Return -1 if no square starts at position K of TEXT (a
+     *  CharSequence or byte[]), looking no further than END, and
+     *  otherwise the position just after it, shifted left INDEX_BITS,
+     *  plus its index. */
+    private static int square(Object text, int k, int end) {
+        if (k + 1 >= end) {
+            return -1;
+        }
+        int col = charAt(text, k) - 'a', row = charAt(text, k + 1) - '1';
+        if (col < 0 || col >= Board.SIZE || row < 0 || row >= Board.SIZE) {
+            return -1;
+        }
+        k += 2;
+        if (row == 0 && k < end && charAt(text, k) == '0') {
+            row = Board.SIZE - 1;
+            k += 1;
+        } else if (row == Board.SIZE - 1) {
+            return -1;
+        }
+        return (k << INDEX_BITS) | (row * Board.SIZE + col);
+    }
+
+    /** Return the position of the first character at or after K in TEXT
+     *  (a CharSequence or byte[]) that is not whitespace, or END if
+     *  there is none before END. */
+    private static int skipSpace(Object text, int k, int end) {
+        while (k < end && isSpace(charAt(text, k))) {
+            k += 1;
+        }
+        return k;
+    }
+
+    /** Return true iff C is whitespace, as \s in a regular expression
+     *  defines it. */
+    private static boolean isSpace(int c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000b'
+            || c == '\f' || c == '\r';
+    }
+
+    /** Return the character at position K of TEXT, which is either a
+     *  CharSequence or an array of ASCII bytes. */
+    private static int charAt(Object text, int k) {
+        if (text instanceof byte[]) {
+            return ((byte[]) text)[k] & 0xff;
+        }
+        return ((CharSequence) text).charAt(k);
+    }
+}
@@ -0,0 +1,66 @@
+package amazons;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+import java.util.Random;
+
+/** JUnit tests of Notation and the parsing of squares and moves.
+ *  @author Ethan Yim
+ */
+public class NotationTest {
+
+    /** Tests that moves and squares are parsed as MOVE_PATTERN and SQ
+     *  describe, from strings and from byte arrays, and from several
+     *  threads at once. */
+    @Test
+    public void testParseMove() {
+        String[] samples = {
+            "a1-a2(a3)", "j10-j9(j10)", "a1 a2 a3", "d1\t d4 \nd1",
+            "a10-a1(a10)", "a1-a2(a3) ", " a1 a2 a3", "a11-a2(a3)",
+            "k1-a2(a3)", "a0-a2(a3)", "a1a2a3", "a1-a2 (a3)", "a1-a2(a3",
+            "a1 a2", "a1  -a2(a3)", "a1 a2 a3 a4", "", "a", "a1-",
+        };
+        for (String str : samples) {
+            assertEquals(str, Move.MOVE_PATTERN.matcher(str).matches(),
+                         Move.isGrammaticalMove(str));
+        }
+        Random random = new Random(UnitTest.RANDOM_SEED);
+        String alphabet = "aj190-() ";
+        StringBuilder str = new StringBuilder();
+        for (int k = 0; k < PARSE_SAMPLES; k += 1) {
+            str.setLength(0);
+            for (int n = random.nextInt(PARSE_LENGTH); n > 0; n -= 1) {
+                str.append(alphabet.charAt(random.nextInt(alphabet.length())));
+            }
+            assertEquals(str.toString(),
+                         Move.MOVE_PATTERN.matcher(str).matches(),
+                         Move.isGrammaticalMove(str));
+        }
+
+        Move move = Move.mv("d1-d4(d1)");
+        assertSame(move, Move.mv("d1 d4 d1"));
+        assertSame(move, Move.mv(new StringBuilder("d1-d4(d1)")));
+        byte[] bytes = "new\nd1 d4 d1\n".getBytes();
+        assertSame(move, Move.mv(bytes, 4, 12));
+        assertNull(Move.mv(bytes, 4, 13));
+        assertNull(Move.mv("a1-b3(a1)"));
+        assertEquals(99, Square.sq("j10").index());
+        assertEquals(30, Square.sq(new StringBuilder("a4")).index());
+        try {
+            Square.sq("k4");
+            fail("k4 accepted as a square");
+        } catch (IllegalArgumentException excp) {
+            /* Expected. */
+        }
+
+        assertTrue(new Board().legalMoveStream().parallel()
+                   .allMatch(m -> Move.mv(m.toString()) == m));
+    }
+
+    /** Random strings parsed by testParseMove. */
+    static final int PARSE_SAMPLES = 20000;
+
+    /** Longest random string parsed by testParseMove. */
+    static final int PARSE_LENGTH = 12;
+}
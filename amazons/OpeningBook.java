@@ -0,0 +1,368 @@
+package amazons;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.IntUnaryOperator;
+
+import static amazons.Piece.*;
+
+/** A book of opening moves, read through a memory-mapped file so that
+ *  no parsing or heap loading is needed at startup.
+ *
+ *  Positions are identified by their Board.canonicalHash() (which
+ *  includes the side to move), so a book is only good for the version
+ *  of Board that wrote it.  Mirror images of a position share entries:
+ *  moves are recorded as they appear in the position's canonical image
+ *  (see Board.canonicalSymmetry), and moves that are mirror images of
+ *  each other in a symmetric position are recorded as one.  Each entry
+ *  gives a move from a position and a weight, the number of recorded
+ *  games in which the side making that move went on to win.  Moves are
+ *  chosen from the book at random, in proportion to their weights, so
+ *  that the player does not always play the same line.
+ *
+ *  The file consists of a header of four ints (MAGIC, VERSION, the
+ *  number of plies covered, and the number of entries), followed by
+ *  the entries, sorted by hash and then move.  Each entry is the hash
+ *  (a long), the Move.code() of the move, and its weight (both ints).
+ *  @author Ethan Yim
+ */
+class OpeningBook {
+
+    /** First int of a book file. */
+    static final int MAGIC = 0x414d4f42;
+    /** Version of the file format. */
+    static final int VERSION = 2;
+    /** Default number of plies recorded by a Builder. */
+    static final int DEFAULT_PLIES = 10;
+    /** Size of the header in bytes. */
+    private static final int HEADER_BYTES = 4 * Integer.BYTES;
+    /** Size of one entry in bytes. */
+    private static final int ENTRY_BYTES = Long.BYTES + 2 * Integer.BYTES;
+    /** Name of the system property giving the book file. */
+    static final String FILE_PROPERTY = "amazons.book";
+    /** File used when the property is not set. */
+    static final String DEFAULT_FILE = "opening.book";
+
+    /** An empty book. */
+    private OpeningBook() {
+        _entries = null;
+        _count = 0;
+        _plies = 0;
+    }
+
+    /** A book whose contents are in the mapped file BUFFER. */
+    private OpeningBook(ByteBuffer buffer) throws IOException {
+        if (buffer.capacity() < HEADER_BYTES || buffer.getInt(0) != MAGIC
+            || buffer.getInt(Integer.BYTES) != VERSION) {
+            throw new IOException("not an opening book");
+        }
+        _plies = buffer.getInt(2 * Integer.BYTES);
+        _count = buffer.getInt(3 * Integer.BYTES);
+        if (buffer.capacity() != HEADER_BYTES + (long) _count * ENTRY_BYTES) {
+            throw new IOException("truncated opening book");
+        }
+        _entries = buffer;
+    }
+
+    /** Return the book in FILE, mapped into memory. */
+    static OpeningBook open(String file) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(file),
+                                                    StandardOpenOption.READ)) {
+            return new OpeningBook(
+                channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /** Return the book named by the amazons.book property (by default,
+     *  opening.book in the current directory), opened the first time it
+     *  is asked for.  If there is no such file, or it cannot be read,
+     *  return an empty book. */
+    static OpeningBook standard() {
+        synchronized (OpeningBook.class) {
+            if (_standard == null) {
+                String file = System.getProperty(FILE_PROPERTY, DEFAULT_FILE);
+                _standard = new OpeningBook();
+                if (Files.isReadable(Paths.get(file))) {
+                    try {
+                        _standard = open(file);
+                    } catch (IOException excp) {
+                        System.err.printf("Ignoring opening book %s: %s%n",
+                                          file, excp.getMessage());
+                    }
+                }
+            }
+            return _standard;
+        }
+    }
+
+    /** Return the number of plies from the start that I cover. */
+    int plies() {
+        return _plies;
+    }
+
+    /** Return the number of entries I hold. */
+    int size() {
+        return _count;
+    }
+
+    /** Return the weight recorded for MOVE from BOARD, or 0 if there is
+     *  none. */
+    int weight(Board board, Move move) {
+        long hash = board.canonicalHash();
+        int code = board.canonicalCode(move);
+        for (int k = first(hash); k < _count; k += 1) {
+            int at = HEADER_BYTES + k * ENTRY_BYTES;
+            if (_entries.getLong(at) != hash) {
+                break;
+            }
+            if (_entries.getInt(at + Long.BYTES) == code) {
+                return _entries.getInt(at + Long.BYTES + Integer.BYTES);
+            }
+        }
+        return 0;
+    }
+
+    /** Return a move from BOARD chosen at random in proportion to the
+     *  weights of the legal moves I record for it, or null if I record
+     *  none.  RANDOM(N) must return a random number in 0 .. N-1. */
+    Move choose(Board board, IntUnaryOperator random) {
+        long hash = board.canonicalHash();
+        int start = first(hash), total = 0,
+            undo = Square.inverse(board.canonicalSymmetry());
+        List<Move> moves = new ArrayList<>();
+        List<Integer> weights = new ArrayList<>();
+        for (int k = start; k < _count; k += 1) {
+            int at = HEADER_BYTES + k * ENTRY_BYTES;
+            if (_entries.getLong(at) != hash) {
+                break;
+            }
+            Move move =
+                Move.mv(_entries.getInt(at + Long.BYTES)).transform(undo);
+            int weight = _entries.getInt(at + Long.BYTES + Integer.BYTES);
+            if (weight > 0 && board.isLegal(move)) {
+                moves.add(move);
+                weights.add(weight);
+                total += weight;
+            }
+        }
+        if (total == 0) {
+            return null;
+        }
+        int pick = random.applyAsInt(total);
+        for (int k = 0; ; k += 1) {
+            pick -= weights.get(k);
+            if (pick < 0) {
+                return moves.get(k);
+            }
+        }
+    }
+
+    /** Return the index of the first entry whose hash is at least HASH,
+     *  or _count if there is none. */
+    private int first(long hash) {
+        int lo = 0, hi = _count;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (_entries.getLong(HEADER_BYTES + mid * ENTRY_BYTES) < hash) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /** Return the winner of the game whose final position is BOARD, using
+     *  EVALUATOR to settle it once no region is contested, or EMPTY if
+     *  it is not yet decided or EVALUATOR can only estimate its
+     *  margin. */
+    private static Piece result(Board board, Evaluator evaluator) {
+        if (!board.legalMoves().hasNext()) {
+            return board.turn().opponent();
+        }
+        if (board.hasContestedRegion()) {
+            return EMPTY;
+        }
+        int margin = evaluator.margin(board);
+        if (!evaluator.exact()) {
+            return EMPTY;
+        }
+        if (board.turn() == BLACK) {
+            margin += 1;
+        }
+        return margin > 0 ? WHITE : BLACK;
+    }
+
+    /** Collects the moves of finished games and writes them as a book. */
+    static class Builder {
+
+        /** A builder recording the first PLIES moves of each game. */
+        Builder(int plies) {
+            _plies = plies;
+        }
+
+        /** Return the number of games added so far. */
+        int games() {
+            return _games;
+        }
+
+        /** Record the first plies of the game that started from the
+         *  initial position and went through MOVES, if it is decided,
+         *  crediting the moves of the winner.  Return true if it was
+         *  decided. */
+        boolean add(List<Move> moves) {
+            Board board = new Board();
+            for (Move move : moves) {
+                board.makeMove(move);
+            }
+            Piece winner = result(board, _evaluator);
+            if (winner == EMPTY) {
+                return false;
+            }
+            board = new Board();
+            for (int k = 0; k < moves.size() && k < _plies; k += 1) {
+                Move move = moves.get(k);
+                if (board.turn() == winner) {
+                    _weights.computeIfAbsent(board.canonicalHash(),
+                                             h -> new TreeMap<>())
+                        .merge(board.canonicalCode(move), 1, Integer::sum);
+                }
+                board.makeMove(move);
+            }
+            _games += 1;
+            return true;
+        }
+
+        /** Add the games recorded in FILE, a log written by Main's --log
+         *  option.  Moves are replayed from "new" (or the start of the
+         *  file), "undo" is honored, illegal moves (which the game
+         *  rejected) and other commands are skipped, and games that are
+         *  undecided at the next "new" or the end of the file are
+         *  ignored.  Return the number of games added. */
+        int addLog(String file) throws IOException {
+            int added = 0;
+            Board board = new Board();
+            List<Move> moves = new ArrayList<>();
+            try (BufferedReader in =
+                     Files.newBufferedReader(Paths.get(file))) {
+                for (String line = in.readLine(); line != null;
+                     line = in.readLine()) {
+                    line = line.replaceFirst("#.*", "").trim().toLowerCase();
+                    if (line.equals("new")) {
+                        added += add(moves) ? 1 : 0;
+                        board = new Board();
+                        moves.clear();
+                    } else if (line.equals("undo")) {
+                        if (board.numMoves() >= 2) {
+                            board.undo();
+                            moves.subList(moves.size() - 2, moves.size())
+                                .clear();
+                        }
+                    } else {
+                        Move move = Move.mv(line);
+                        if (move != null && board.isLegal(move)) {
+                            board.makeMove(move);
+                            moves.add(move);
+                        }
+                    }
+                }
+            }
+            added += add(moves) ? 1 : 0;
+            return added;
+        }
+
+        /** Play GAMES games between MCTSPlayers allowed MILLIS
+         *  milliseconds per move, seeded in turn from SEED, and add them.
+         *  Each game stops as soon as its result is known: once a side
+         *  cannot move, or no region is contested and the margin is
+         *  exact.  Report progress on PROGRESS, unless it is null. */
+        void selfPlay(int games, int millis, long seed,
+                      PrintStream progress) {
+            for (int g = 0; g < games; g += 1) {
+                MCTSPlayer player =
+                    new MCTSPlayer(millis, MCTSPlayer.DEFAULT_PLAYOUT_DEPTH);
+                player.setSeed(seed + g);
+                Board board = new Board();
+                List<Move> moves = new ArrayList<>();
+                while (result(board, _evaluator) == EMPTY) {
+                    Move move = player.findMove(board);
+                    board.makeMove(move);
+                    moves.add(move);
+                }
+                add(moves);
+                if (progress != null) {
+                    progress.printf("game %d: %s wins after %d moves%n",
+                                    g + 1, result(board, _evaluator),
+                                    moves.size());
+                }
+            }
+        }
+
+        /** Write the book to FILE. */
+        void write(String file) throws IOException {
+            Map<Long, Map<Integer, Integer>> sorted = new TreeMap<>(_weights);
+            int count = 0;
+            for (Map<Integer, Integer> moves : sorted.values()) {
+                count += moves.size();
+            }
+            Path tmp = Paths.get(file + ".tmp");
+            try (DataOutputStream out = new DataOutputStream(
+                     new BufferedOutputStream(new FileOutputStream(
+                         tmp.toFile())))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(_plies);
+                out.writeInt(count);
+                for (Map.Entry<Long, Map<Integer, Integer>> position
+                         : sorted.entrySet()) {
+                    for (Map.Entry<Integer, Integer> move
+                             : position.getValue().entrySet()) {
+                        out.writeLong(position.getKey());
+                        out.writeInt(move.getKey());
+                        out.writeInt(move.getValue());
+                    }
+                }
+            }
+            Files.move(tmp, Paths.get(file),
+                       StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        /** Number of plies recorded from each game. */
+        private final int _plies;
+        /** The weight of each move (by code) from each position (by
+         *  hash). */
+        private final Map<Long, Map<Integer, Integer>> _weights =
+            new HashMap<>();
+        /** Settles games that end with no contested region. */
+        private final Evaluator _evaluator =
+            new Evaluator(RegionTablebase.standard());
+        /** Number of games added. */
+        private int _games;
+    }
+
+    /** The book returned by standard(), once opened. */
+    private static OpeningBook _standard;
+
+    /** The mapped file, or null if I am empty. */
+    private final ByteBuffer _entries;
+    /** The number of entries in _entries. */
+    private final int _count;
+    /** The number of plies covered. */
+    private final int _plies;
+}
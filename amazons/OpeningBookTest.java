@@ -0,0 +1,124 @@
+package amazons;
+
+import org.junit.Test;
+
+import static amazons.Piece.*;
+import static org.junit.Assert.*;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/** JUnit tests of OpeningBook.
+ *  @author Ethan Yim
+ */
+public class OpeningBookTest {
+
+    /** Tests that an opening book records the winners' moves of the
+     *  games it is built from, whether given directly or in a log, and
+     *  offers only those moves. */
+    @Test
+    public void testOpeningBook() throws IOException {
+        Random random = new Random(UnitTest.RANDOM_SEED);
+        OpeningBook.Builder builder =
+            new OpeningBook.Builder(UnitTest.BOOK_PLIES);
+        List<List<Move>> games = new ArrayList<>();
+        for (int g = 0; g < 5; g += 1) {
+            games.add(UnitTest.randomGame(random));
+            assertTrue(builder.add(games.get(g)));
+        }
+        File log = File.createTempFile("games", ".log");
+        log.deleteOnExit();
+        try (PrintStream out = new PrintStream(log)) {
+            out.println("seed 1");
+            for (Move move : games.get(0)) {
+                out.println(move.from() + " " + move.to() + " "
+                            + move.spear());
+            }
+            out.println("new");
+            out.println(games.get(1).get(0));
+            out.println("a1-a1(a1)");
+            out.println("undo");
+        }
+        assertEquals(1, builder.addLog(log.getPath()));
+        assertEquals(6, builder.games());
+        File file = File.createTempFile("opening", ".book");
+        file.deleteOnExit();
+        builder.write(file.getPath());
+        OpeningBook book = OpeningBook.open(file.getPath());
+        assertEquals(UnitTest.BOOK_PLIES, book.plies());
+        assertTrue(book.size() > 0);
+
+        Board b = new Board();
+        int total = 0;
+        for (List<Move> game : games) {
+            Board end = new Board();
+            game.forEach(end::makeMove);
+            int credit = end.turn() == WHITE ? 0 : 1;
+            if (game == games.get(0)) {
+                credit *= 2;
+            }
+            total += book.weight(b, game.get(0));
+            assertTrue(book.weight(b, game.get(0)) >= credit);
+        }
+        if (total > 0) {
+            for (int k = 0; k < 20; k += 1) {
+                Move move = book.choose(b, random::nextInt);
+                assertTrue(book.weight(b, move) > 0);
+            }
+        } else {
+            assertEquals(null, book.choose(b, random::nextInt));
+        }
+        Board late = new Board();
+        games.get(0).subList(0, UnitTest.BOOK_PLIES).forEach(late::makeMove);
+        assertEquals(null, book.choose(late, random::nextInt));
+    }
+
+    /** Tests that "undo" in a log takes back a move of each side, as it
+     *  does in the game, so that a game with a retracted detour makes
+     *  the same book as the game played straight. */
+    @Test
+    public void testAddLogUndo() throws IOException {
+        Random random = new Random(UnitTest.RANDOM_SEED);
+        List<Move> game = UnitTest.randomGame(random),
+            detour = UnitTest.randomGame(random);
+        File log = File.createTempFile("undo", ".log");
+        log.deleteOnExit();
+        try (PrintStream out = new PrintStream(log)) {
+            out.println("undo");
+            out.println(detour.get(0));
+            out.println(detour.get(1));
+            out.println("undo");
+            for (Move move : game) {
+                out.println(move);
+            }
+        }
+        OpeningBook.Builder logged =
+            new OpeningBook.Builder(UnitTest.BOOK_PLIES);
+        assertEquals(1, logged.addLog(log.getPath()));
+        OpeningBook.Builder direct =
+            new OpeningBook.Builder(UnitTest.BOOK_PLIES);
+        assertTrue(direct.add(game));
+        File loggedBook = File.createTempFile("logged", ".book"),
+            directBook = File.createTempFile("direct", ".book");
+        loggedBook.deleteOnExit();
+        directBook.deleteOnExit();
+        logged.write(loggedBook.getPath());
+        direct.write(directBook.getPath());
+        assertArrayEquals(Files.readAllBytes(directBook.toPath()),
+                          Files.readAllBytes(loggedBook.toPath()));
+    }
+
+    /** Tests that the builder's self-play adds the games it plays. */
+    @Test
+    public void testSelfPlay() {
+        OpeningBook.Builder builder =
+            new OpeningBook.Builder(UnitTest.BOOK_PLIES);
+        builder.selfPlay(2, UnitTest.MATCH_TEST_TIME, UnitTest.RANDOM_SEED,
+                         null);
+        assertEquals(2, builder.games());
+    }
+}
@@ -0,0 +1,147 @@
+package amazons;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/** Counts the move sequences of a given length from a position ("perft"),
+ *  to check and time move generation on its own.  The count to depth 1
+ *  from the initial position is 2176.
+ *
+ *  The last ply is counted from the sizes that Board.legalMoveStream
+ *  knows without producing the moves.  The root moves are divided among
+ *  several threads, each of which walks its subtrees with makeMove and
+ *  retract on its own board.  Optionally, counts of subtrees are kept
+ *  in a table keyed by Board.canonicalHash and the depth, so that
+ *  transpositions and mirror images are counted once.  The table is
+ *  shared by the threads without locks: each slot holds a count and its
+ *  key xor the count, so a slot torn by two threads writing at once
+ *  fails to match any key rather than giving a wrong count.
+ *  @author Ethan Yim
+ */
+class Perft {
+
+    /** Seed for the keys that distinguish depths in the table. */
+    private static final long DEPTH_SEED = 0x70657266L;
+    /** Nanoseconds per second. */
+    private static final double NANOS = 1e9;
+    /** Bytes used by one slot of the table. */
+    private static final int SLOT_BYTES = 2 * Long.BYTES;
+
+    /** A counter using THREADS threads and a table of about MEMORY bytes
+     *  (none if MEMORY is too small for one slot). */
+    Perft(int threads, long memory) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("need at least one thread");
+        }
+        _threads = threads;
+        int slots = (int) Long.highestOneBit(
+            Math.min(memory / SLOT_BYTES, 1 << (Integer.SIZE - 2)));
+        _keys = slots == 0 ? null : new long[slots];
+        _counts = slots == 0 ? null : new long[slots];
+    }
+
+    /** Print on OUT the counts from BOARD to each depth from 1 to DEPTH,
+     *  with the time taken and the rate at which sequences were
+     *  counted. */
+    void report(Board board, int depth, PrintStream out) {
+        for (int d = 1; d <= depth; d += 1) {
+            long start = System.nanoTime();
+            long count = count(board, d);
+            double secs = (System.nanoTime() - start) / NANOS;
+            out.printf("perft %d: %d (%.3f s, %.0f nodes/sec)%n", d, count,
+                       secs, count / Math.max(secs, 1 / NANOS));
+        }
+    }
+
+    /** Return the number of sequences of DEPTH legal moves from BOARD,
+     *  which is unchanged.  Lines that reach a position with no moves in
+     *  fewer than DEPTH moves count for nothing. */
+    long count(Board board, int depth) {
+        if (depth <= 1 || _threads == 1) {
+            return count(new Board(board), depth, depthKeys(depth));
+        }
+        long[] depthKeys = depthKeys(depth);
+        List<Move> moves = new ArrayList<>();
+        board.legalMoves().forEachRemaining(moves::add);
+        ExecutorService threads = Executors.newFixedThreadPool(_threads);
+        try {
+            List<Future<Long>> counts = new ArrayList<>();
+            for (Move move : moves) {
+                counts.add(threads.submit(() -> {
+                    Board b = new Board(board);
+                    b.makeMove(move);
+                    return count(b, depth - 1, depthKeys);
+                }));
+            }
+            long total = 0;
+            for (Future<Long> count : counts) {
+                total += count.get();
+            }
+            return total;
+        } catch (InterruptedException excp) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("perft interrupted");
+        } catch (ExecutionException excp) {
+            throw new IllegalStateException("perft failed", excp.getCause());
+        } finally {
+            threads.shutdown();
+        }
+    }
+
+    /** Return the number of sequences of DEPTH legal moves from BOARD,
+     *  using DEPTHKEYS to key the table.  BOARD is restored before
+     *  returning. */
+    private long count(Board board, int depth, long[] depthKeys) {
+        if (depth == 0) {
+            return 1;
+        }
+        if (depth == 1) {
+            return board.legalMoveStream().count();
+        }
+        long result = 0;
+        long key = 0;
+        int slot = 0;
+        if (_keys != null) {
+            key = board.canonicalHash() ^ depthKeys[depth];
+            slot = (int) (key ^ (key >>> Integer.SIZE)) & (_keys.length - 1);
+            long count = _counts[slot];
+            if ((_keys[slot] ^ count) == key) {
+                return count;
+            }
+        }
+        List<Move> moves = new ArrayList<>();
+        board.legalMoves().forEachRemaining(moves::add);
+        for (Move move : moves) {
+            board.makeMove(move);
+            result += count(board, depth - 1, depthKeys);
+            board.retract();
+        }
+        if (_keys != null) {
+            _counts[slot] = result;
+            _keys[slot] = key ^ result;
+        }
+        return result;
+    }
+
+    /** Return the keys distinguishing the depths up to DEPTH. */
+    private static long[] depthKeys(int depth) {
+        Random random = new Random(DEPTH_SEED);
+        long[] result = new long[Math.max(depth, 0) + 1];
+        for (int d = 0; d < result.length; d += 1) {
+            result[d] = random.nextLong();
+        }
+        return result;
+    }
+
+    /** Number of threads to use. */
+    private final int _threads;
+    /** The table of counts, or null if there is none.  Slot s holds the
+     *  count _counts[s] for the key _keys[s] ^ _counts[s]. */
+    private final long[] _keys, _counts;
+}
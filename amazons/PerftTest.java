@@ -0,0 +1,31 @@
+package amazons;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+import java.util.List;
+import java.util.Random;
+
+/** JUnit tests of Perft.
+ *  @author Ethan Yim
+ */
+public class PerftTest {
+
+    /** Tests perft against the known counts from the initial position,
+     *  and that threads and the table do not change the counts. */
+    @Test
+    public void testPerft() {
+        Board b = new Board();
+        Perft hashed = new Perft(2, 1 << 20), plain = new Perft(1, 0);
+        assertEquals(2176, plain.count(b, 1));
+        assertEquals(4307152, hashed.count(b, 2));
+        List<Move> game = UnitTest.randomGame(new Random(UnitTest.RANDOM_SEED));
+        for (Move move : game.subList(0, game.size() - 12)) {
+            b.makeMove(move);
+        }
+        String before = b.toString();
+        assertEquals(plain.count(b, 3), hashed.count(b, 3));
+        assertEquals(hashed.count(b, 3), hashed.count(b, 3));
+        assertEquals(before, b.toString());
+    }
+}
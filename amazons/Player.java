@@ -36,6 +36,12 @@ abstract class Player {
      *  is not null. */
     abstract String myMove();
 
+    /** Return the statistics of the search for my last move, or null
+     *  if I keep none. */
+    SearchStats stats() {
+        return null;
+    }
+
     /** My Controller. */
     protected Controller _controller;
     /** The Piece I play (WHITE or BLACK). */
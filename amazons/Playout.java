@@ -0,0 +1,219 @@
+package amazons;
+
+import java.util.Arrays;
+
+import static amazons.Piece.*;
+
+/** A kernel for playing fast random games.  It keeps its own copy of a
+ *  position in primitive arrays, on a board with a border of blocked
+ *  squares so that sliding needs no bounds checks, and plays random moves
+ *  on it without allocating anything.  A random move is chosen without
+ *  listing all the moves: a queen is chosen at random among those that
+ *  can move, then one of its destinations, and then one of the squares
+ *  it can throw a spear to from there.  Instances are not thread-safe.
+ *  @author Ethan Yim
+ */
+class Playout {
+
+    /** Width of the bordered board. */
+    private static final int WIDTH = Board.SIZE + 2;
+    /** Number of squares on the bordered board. */
+    private static final int CELLS = WIDTH * WIDTH;
+    /** Contents of cells: empty, White or Black queen, or blocked (by a
+     *  spear or the border). */
+    private static final byte OPEN = 0, WHITE_QUEEN = 1, BLACK_QUEEN = 2,
+        BLOCKED = 3;
+    /** Offsets to the neighboring cell in each of the eight directions. */
+    private static final int[] STEPS = {
+        1, -1, WIDTH, -WIDTH, WIDTH + 1, -WIDTH - 1, WIDTH - 1, -WIDTH + 1
+    };
+    /** Number of queens per side. */
+    private static final int QUEENS = 4;
+    /** Value returned by step when the side to move cannot move. */
+    static final int NO_MOVE = -1;
+    /** Distance recorded for cells a side cannot reach. */
+    private static final int FAR = Integer.MAX_VALUE;
+    /** Multiplier for the random number generator (xorshift64*). */
+    private static final long MULTIPLIER = 0x2545F4914F6CDD1DL;
+
+    /** A kernel whose random choices start from SEED. */
+    Playout(long seed) {
+        _seed = seed == 0 ? 1 : seed;
+    }
+
+    /** Set my position to that of BOARD. */
+    void load(Board board) {
+        int[] count = _count;
+        count[0] = count[1] = 0;
+        for (int c = 0; c < CELLS; c += 1) {
+            int row = c / WIDTH - 1, col = c % WIDTH - 1;
+            if (row < 0 || col < 0 || row >= Board.SIZE
+                || col >= Board.SIZE) {
+                _cells[c] = BLOCKED;
+                continue;
+            }
+            Piece p = board.get(col, row);
+            if (p == WHITE || p == BLACK) {
+                int side = p == WHITE ? 0 : 1;
+                _queens[side][count[side]] = c;
+                count[side] += 1;
+                _cells[c] = p == WHITE ? WHITE_QUEEN : BLACK_QUEEN;
+            } else {
+                _cells[c] = p == EMPTY ? OPEN : BLOCKED;
+            }
+        }
+        _numQueens[0] = count[0];
+        _numQueens[1] = count[1];
+        _side = board.turn() == WHITE ? 0 : 1;
+    }
+
+    /** Return the side to move. */
+    Piece turn() {
+        return _side == 0 ? WHITE : BLACK;
+    }
+
+    /** Play random moves until the side to move cannot move, or until
+     *  DEPTH moves have been made.  Return the winner in the first case
+     *  and EMPTY in the second. */
+    Piece play(int depth) {
+        for (int k = 0; k < depth; k += 1) {
+            if (step() == NO_MOVE) {
+                return _side == 0 ? BLACK : WHITE;
+            }
+        }
+        return EMPTY;
+    }
+
+    /** Make a random move for the side to move and return its
+     *  Move.code(), or return NO_MOVE if it has none. */
+    int step() {
+        int[] queens = _queens[_side];
+        int n = _numQueens[_side];
+        for (int k = 0; k < n; k += 1) {
+            _order[k] = k;
+        }
+        for (int k = n; k > 0; k -= 1) {
+            int j = nextInt(k);
+            int q = _order[j];
+            _order[j] = _order[k - 1];
+            int from = queens[q];
+            int destinations = countRays(from);
+            if (destinations == 0) {
+                continue;
+            }
+            int to = pick(from, nextInt(destinations));
+            _cells[from] = OPEN;
+            int spear = pick(to, nextInt(countRays(to)));
+            _cells[to] = _side == 0 ? WHITE_QUEEN : BLACK_QUEEN;
+            _cells[spear] = BLOCKED;
+            queens[q] = to;
+            _side ^= 1;
+            return (index(from) << (2 * Move.CODE_BITS))
+                | (index(to) << Move.CODE_BITS) | index(spear);
+        }
+        return NO_MOVE;
+    }
+
+    /** Return the territory balance from White's point of view: the
+     *  number of empty squares White's queens reach in fewer queen moves
+     *  than Black's, less the number Black's reach first. */
+    int territory() {
+        distances(0, _dist[0]);
+        distances(1, _dist[1]);
+        int result = 0;
+        for (int c = 0; c < CELLS; c += 1) {
+            if (_cells[c] == OPEN) {
+                result += Integer.signum(_dist[1][c] - _dist[0][c]);
+            }
+        }
+        return result;
+    }
+
+    /** Fill DIST with the queen-move distance of each cell from the
+     *  queens of SIDE, through empty cells. */
+    private void distances(int side, int[] dist) {
+        Arrays.fill(dist, FAR);
+        int head, tail;
+        head = tail = 0;
+        for (int k = 0; k < _numQueens[side]; k += 1) {
+            dist[_queens[side][k]] = 0;
+            _queue[tail] = _queens[side][k];
+            tail += 1;
+        }
+        while (head < tail) {
+            int c = _queue[head];
+            head += 1;
+            int d = dist[c] + 1;
+            for (int step : STEPS) {
+                for (int t = c + step; _cells[t] == OPEN; t += step) {
+                    if (dist[t] > d) {
+                        dist[t] = d;
+                        _queue[tail] = t;
+                        tail += 1;
+                    }
+                }
+            }
+        }
+    }
+
+    /** Record in _rays the number of empty cells in each direction from
+     *  cell FROM, and return their total. */
+    private int countRays(int from) {
+        int total = 0;
+        for (int dir = 0; dir < STEPS.length; dir += 1) {
+            int len = 0;
+            for (int t = from + STEPS[dir]; _cells[t] == OPEN;
+                 t += STEPS[dir]) {
+                len += 1;
+            }
+            _rays[dir] = len;
+            total += len;
+        }
+        return total;
+    }
+
+    /** Return the Kth empty cell reachable from FROM, in the order
+     *  counted by the last call of countRays. */
+    private int pick(int from, int k) {
+        for (int dir = 0; ; dir += 1) {
+            if (k < _rays[dir]) {
+                return from + (k + 1) * STEPS[dir];
+            }
+            k -= _rays[dir];
+        }
+    }
+
+    /** Return the index of the Square at cell C. */
+    private static int index(int c) {
+        return (c / WIDTH - 1) * Board.SIZE + c % WIDTH - 1;
+    }
+
+    /** Return a random number in the range 0 .. N-1, for N > 0. */
+    private int nextInt(int n) {
+        _seed ^= _seed >>> 12;
+        _seed ^= _seed << 25;
+        _seed ^= _seed >>> 27;
+        return (int) (((_seed * MULTIPLIER) >>> 33) * n >>> 31);
+    }
+
+    /** The contents of each cell. */
+    private final byte[] _cells = new byte[CELLS];
+    /** The cells of the queens of each side (White first). */
+    private final int[][] _queens = new int[2][QUEENS];
+    /** The number of queens of each side. */
+    private final int[] _numQueens = new int[2];
+    /** The side to move: 0 for White, 1 for Black. */
+    private int _side;
+    /** State of the random number generator. */
+    private long _seed;
+    /** Scratch space: the length of each ray from a cell. */
+    private final int[] _rays = new int[STEPS.length];
+    /** Scratch space: the order in which queens are tried. */
+    private final int[] _order = new int[QUEENS];
+    /** Scratch space: the queens counted so far by load. */
+    private final int[] _count = new int[2];
+    /** Scratch space: distances from each side. */
+    private final int[][] _dist = new int[2][CELLS];
+    /** Scratch space: the queue of the breadth-first search. */
+    private final int[] _queue = new int[CELLS];
+}
@@ -0,0 +1,65 @@
+package amazons;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+import java.lang.management.ManagementFactory;
+
+/** JUnit tests of Playout.
+ *  @author Ethan Yim
+ */
+public class PlayoutTest {
+
+    /** Tests that the playout kernel makes only legal moves, plays until
+     *  the side to move is stuck, and agrees with DistanceMap on
+     *  territory. */
+    @Test
+    public void testPlayout() {
+        DistanceMap distances = new DistanceMap();
+        for (long seed = 1; seed <= 20; seed += 1) {
+            Playout playout = new Playout(seed);
+            Board b = new Board();
+            playout.load(b);
+            while (true) {
+                assertEquals(b.turn(), playout.turn());
+                assertEquals(distances.territory(b), playout.territory());
+                int code = playout.step();
+                if (code == Playout.NO_MOVE) {
+                    assertFalse(b.legalMoves().hasNext());
+                    break;
+                }
+                Move move = Move.mv(code);
+                assertTrue(b.isLegal(move));
+                b.makeMove(move);
+            }
+        }
+    }
+
+    /** Tests that the playout kernel does not allocate, where the JVM can
+     *  tell. */
+    @Test
+    public void testPlayoutAllocation() {
+        java.lang.management.ThreadMXBean bean =
+            ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+            return;
+        }
+        com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) bean;
+        long id = Thread.currentThread().getId();
+        Playout playout = new Playout(UnitTest.RANDOM_SEED);
+        Board b = new Board();
+        for (int round = 0; round < 2; round += 1) {
+            long before = threads.getThreadAllocatedBytes(id);
+            for (int k = 0; k < 1000; k += 1) {
+                playout.load(b);
+                playout.play(Integer.MAX_VALUE);
+                playout.territory();
+            }
+            long allocated = threads.getThreadAllocatedBytes(id) - before;
+            if (round > 0) {
+                assertEquals(0, allocated);
+            }
+        }
+    }
+}
@@ -0,0 +1,441 @@
+package amazons;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.IntFunction;
+import java.util.stream.IntStream;
+
+import static amazons.Piece.*;
+
+/** Statistics of the positions reached in a collection of games: for
+ *  each position, how many games reached it, how many of those each
+ *  side won, and how often each move was played from it and won.  The
+ *  database is read through a memory-mapped file, and a position is
+ *  found by binary search on its hash, so a lookup reads a few pages
+ *  and allocates almost nothing.
+ *
+ *  As in an OpeningBook, positions are identified by their
+ *  Board.canonicalHash(), so mirror images of a position share an
+ *  entry, moves are recorded by Board.canonicalCode, and a database is
+ *  only good for the version of Board that wrote it.
+ *
+ *  The file consists of a header of five ints (MAGIC, VERSION, the
+ *  number of plies covered, the number of positions and the number of
+ *  moves), followed by the positions, sorted by hash, and then the
+ *  moves.  Each position is its hash (a long), the number of games
+ *  that reached it, the numbers won by White and by Black, and the
+ *  index of its first move (all ints).  Each move is its code, the
+ *  number of games in which it was played, and the number of those
+ *  won by the side that played it (all ints).  A position's moves
+ *  follow each other, most played first, and end where the next
+ *  position's begin.
+ *  @author Ethan Yim
+ */
+class PositionDatabase {
+
+    /** First int of a database file. */
+    static final int MAGIC = 0x414d5044;
+    /** Version of the file format. */
+    static final int VERSION = 1;
+    /** Default number of plies recorded by a Builder. */
+    static final int DEFAULT_PLIES = 20;
+    /** Fewest games in which a move must have been played for best to
+     *  choose it, by default. */
+    static final int DEFAULT_MIN_GAMES = 10;
+    /** Size of the header in bytes. */
+    private static final int HEADER_BYTES = 5 * Integer.BYTES;
+    /** Size of one position in bytes. */
+    private static final int POSITION_BYTES = Long.BYTES + 4 * Integer.BYTES;
+    /** Size of one move in bytes. */
+    private static final int MOVE_BYTES = 3 * Integer.BYTES;
+    /** Name of the system property giving the database file. */
+    static final String FILE_PROPERTY = "amazons.positions";
+    /** File used when the property is not set. */
+    static final String DEFAULT_FILE = "positions.db";
+
+    /** An empty database. */
+    private PositionDatabase() {
+        _buffer = null;
+        _plies = _positions = _moves = 0;
+    }
+
+    /** A database whose contents are in the mapped file BUFFER. */
+    private PositionDatabase(ByteBuffer buffer) throws IOException {
+        if (buffer.capacity() < HEADER_BYTES || buffer.getInt(0) != MAGIC
+            || buffer.getInt(Integer.BYTES) != VERSION) {
+            throw new IOException("not a position database");
+        }
+        _plies = buffer.getInt(2 * Integer.BYTES);
+        _positions = buffer.getInt(3 * Integer.BYTES);
+        _moves = buffer.getInt(4 * Integer.BYTES);
+        if (buffer.capacity() != HEADER_BYTES
+            + (long) _positions * POSITION_BYTES + (long) _moves * MOVE_BYTES) {
+            throw new IOException("truncated position database");
+        }
+        _buffer = buffer;
+    }
+
+    /** Return the database in FILE, mapped into memory. */
+    static PositionDatabase open(String file) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(file),
+                                                    StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("position database too large to map");
+            }
+            return new PositionDatabase(
+                channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /** Return the database named by the amazons.positions property (by
+     *  default, positions.db in the current directory), opened the first
+     *  time it is asked for.  If there is no such file, or it cannot be
+     *  read, return an empty database. */
+    static PositionDatabase standard() {
+        synchronized (PositionDatabase.class) {
+            if (_standard == null) {
+                String file = System.getProperty(FILE_PROPERTY, DEFAULT_FILE);
+                _standard = new PositionDatabase();
+                if (Files.isReadable(Paths.get(file))) {
+                    try {
+                        _standard = open(file);
+                    } catch (IOException excp) {
+                        System.err.printf("Ignoring position database %s:"
+                                          + " %s%n", file, excp.getMessage());
+                    }
+                }
+            }
+            return _standard;
+        }
+    }
+
+    /** Return the number of plies from the start that I cover. */
+    int plies() {
+        return _plies;
+    }
+
+    /** Return the number of positions I hold. */
+    int size() {
+        return _positions;
+    }
+
+    /** Return the statistics of BOARD, or null if I have none. */
+    Position find(Board board) {
+        long hash = board.canonicalHash();
+        int lo = 0, hi = _positions;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            long key = _buffer.getLong(HEADER_BYTES + mid * POSITION_BYTES);
+            if (key < hash) {
+                lo = mid + 1;
+            } else if (key > hash) {
+                hi = mid;
+            } else {
+                return new Position(this, mid,
+                                    Square.inverse(board.canonicalSymmetry()));
+            }
+        }
+        return null;
+    }
+
+    /** Return the legal move from BOARD that won most often for the side
+     *  that played it, among those played in at least MINGAMES games, or
+     *  null if there is none.  Win rates are taken with one win and one
+     *  loss added, so that a move won once in one game does not beat one
+     *  won 9 times in 10. */
+    Move best(Board board, int minGames) {
+        Position position = find(board);
+        if (position == null) {
+            return null;
+        }
+        Move result = null;
+        double bestRate = -1;
+        for (int k = 0; k < position.size(); k += 1) {
+            int played = position.played(k);
+            double rate = (position.won(k) + 1.0) / (played + 2);
+            if (played >= minGames && rate > bestRate) {
+                Move move = position.move(k);
+                if (board.isLegal(move)) {
+                    result = move;
+                    bestRate = rate;
+                }
+            }
+        }
+        return result;
+    }
+
+    /** The statistics of one position, read from the database as
+     *  needed. */
+    static final class Position {
+
+        /** The statistics of position number INDEX of DATABASE, which
+         *  converts to the position asked about under symmetry UNDO. */
+        private Position(PositionDatabase database, int index, int undo) {
+            _buffer = database._buffer;
+            _at = HEADER_BYTES + index * POSITION_BYTES;
+            int first = _buffer.getInt(_at + Long.BYTES + 3 * Integer.BYTES),
+                end = index + 1 < database._positions
+                ? _buffer.getInt(_at + POSITION_BYTES + Long.BYTES
+                                 + 3 * Integer.BYTES)
+                : database._moves;
+            _movesAt = HEADER_BYTES + database._positions * POSITION_BYTES
+                + first * MOVE_BYTES;
+            _size = end - first;
+            _undo = undo;
+        }
+
+        /** Return the number of games that reached the position. */
+        int games() {
+            return _buffer.getInt(_at + Long.BYTES);
+        }
+
+        /** Return the number of those games won by SIDE. */
+        int wins(Piece side) {
+            return _buffer.getInt(_at + Long.BYTES
+                                  + (side == WHITE ? 1 : 2) * Integer.BYTES);
+        }
+
+        /** Return the number of different moves played from the
+         *  position. */
+        int size() {
+            return _size;
+        }
+
+        /** Return move number K (from 0, most played first). */
+        Move move(int k) {
+            return Move.mv(moveInt(k, 0)).transform(_undo);
+        }
+
+        /** Return the number of games in which move K was played. */
+        int played(int k) {
+            return moveInt(k, 1);
+        }
+
+        /** Return the number of those games won by the side playing
+         *  move K. */
+        int won(int k) {
+            return moveInt(k, 2);
+        }
+
+        /** Return int number FIELD of move K. */
+        private int moveInt(int k, int field) {
+            if (k < 0 || k >= _size) {
+                throw new IndexOutOfBoundsException("no move " + k);
+            }
+            return _buffer.getInt(_movesAt + k * MOVE_BYTES
+                                  + field * Integer.BYTES);
+        }
+
+        /** The database's contents. */
+        private final ByteBuffer _buffer;
+        /** Where the position and its moves start in _buffer. */
+        private final int _at, _movesAt;
+        /** The number of moves. */
+        private final int _size;
+        /** The symmetry converting moves as recorded to moves from the
+         *  position asked about. */
+        private final int _undo;
+    }
+
+    /** Collects the positions of games and writes them as a database. */
+    static class Builder {
+
+        /** A builder recording the positions in the first PLIES moves of
+         *  each game. */
+        Builder(int plies) {
+            _plies = plies;
+            _tally = new Tally(plies);
+        }
+
+        /** Return the number of games added so far. */
+        int games() {
+            return _games;
+        }
+
+        /** Add the games in ARCHIVE, replaying them in parallel, each
+         *  thread collecting its own counts, which are then merged.
+         *  Return the number added. */
+        int addArchive(GameArchive archive) {
+            Tally tally = IntStream.range(0, archive.size()).parallel()
+                .mapToObj(archive::game)
+                .collect(() -> new Tally(_plies), Tally::add, Tally::addAll);
+            _tally.addAll(tally);
+            _games += tally.games();
+            return tally.games();
+        }
+
+        /** Add the game that went through MOVES from the initial
+         *  position and was won by WINNER (EMPTY if undecided). */
+        void add(List<Move> moves, Piece winner) {
+            _tally.add(moves::get, moves.size(), winner);
+            _games += 1;
+        }
+
+        /** Write the database to FILE. */
+        void write(String file) throws IOException {
+            Map<Long, Counts> sorted = new TreeMap<>(_tally.positions());
+            int moves = 0;
+            for (Counts counts : sorted.values()) {
+                moves += counts._moves.size();
+            }
+            Path tmp = Paths.get(file + ".tmp");
+            try (DataOutputStream out = new DataOutputStream(
+                     new BufferedOutputStream(new FileOutputStream(
+                         tmp.toFile())))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(_plies);
+                out.writeInt(sorted.size());
+                out.writeInt(moves);
+                int first = 0;
+                for (Map.Entry<Long, Counts> position : sorted.entrySet()) {
+                    Counts counts = position.getValue();
+                    out.writeLong(position.getKey());
+                    out.writeInt(counts._games);
+                    out.writeInt(counts._whiteWins);
+                    out.writeInt(counts._blackWins);
+                    out.writeInt(first);
+                    first += counts._moves.size();
+                }
+                for (Counts counts : sorted.values()) {
+                    List<Map.Entry<Integer, int[]>> entries =
+                        new ArrayList<>(counts._moves.entrySet());
+                    entries.sort((a, b) -> a.getValue()[0] != b.getValue()[0]
+                                 ? b.getValue()[0] - a.getValue()[0]
+                                 : a.getKey() - b.getKey());
+                    for (Map.Entry<Integer, int[]> move : entries) {
+                        out.writeInt(move.getKey());
+                        out.writeInt(move.getValue()[0]);
+                        out.writeInt(move.getValue()[1]);
+                    }
+                }
+            }
+            Files.move(tmp, Paths.get(file),
+                       StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        /** Number of plies recorded from each game. */
+        private final int _plies;
+        /** The counts collected so far. */
+        private final Tally _tally;
+        /** Number of games added. */
+        private int _games;
+    }
+
+    /** Counts of the positions in the games added to it, collected by
+     *  one thread. */
+    private static final class Tally {
+
+        /** A tally of the positions in the first PLIES moves of each
+         *  game. */
+        Tally(int plies) {
+            _plies = plies;
+        }
+
+        /** Add GAME. */
+        void add(GameArchive.Game game) {
+            add(game::move, game.plies(), game.winner());
+        }
+
+        /** Add the game of LENGTH moves, of which move K is MOVES(K),
+         *  won by WINNER (EMPTY if undecided).  Positions are counted up
+         *  to the first illegal move, if any. */
+        void add(IntFunction<Move> moves, int length, Piece winner) {
+            Board board = new Board();
+            for (int k = 0; k < length && k < _plies; k += 1) {
+                Move move = moves.apply(k);
+                if (!board.isLegal(move)) {
+                    break;
+                }
+                Counts counts =
+                    _positions.computeIfAbsent(board.canonicalHash(),
+                                               h -> new Counts());
+                counts._games += 1;
+                if (winner == WHITE) {
+                    counts._whiteWins += 1;
+                } else if (winner == BLACK) {
+                    counts._blackWins += 1;
+                }
+                int[] played =
+                    counts._moves.computeIfAbsent(board.canonicalCode(move),
+                                                 c -> new int[2]);
+                played[0] += 1;
+                if (board.turn() == winner) {
+                    played[1] += 1;
+                }
+                board.makeMove(move);
+            }
+            _games += 1;
+        }
+
+        /** Add the counts of OTHER to mine. */
+        void addAll(Tally other) {
+            for (Map.Entry<Long, Counts> entry
+                     : other._positions.entrySet()) {
+                Counts from = entry.getValue(),
+                    to = _positions.computeIfAbsent(entry.getKey(),
+                                                    h -> new Counts());
+                to._games += from._games;
+                to._whiteWins += from._whiteWins;
+                to._blackWins += from._blackWins;
+                for (Map.Entry<Integer, int[]> move : from._moves.entrySet()) {
+                    int[] played = to._moves.computeIfAbsent(move.getKey(),
+                                                            c -> new int[2]);
+                    played[0] += move.getValue()[0];
+                    played[1] += move.getValue()[1];
+                }
+            }
+            _games += other._games;
+        }
+
+        /** Return the number of games added. */
+        int games() {
+            return _games;
+        }
+
+        /** Return the counts of each position, by hash. */
+        Map<Long, Counts> positions() {
+            return _positions;
+        }
+
+        /** Number of plies recorded from each game. */
+        private final int _plies;
+        /** The counts of each position, by hash. */
+        private final Map<Long, Counts> _positions = new HashMap<>();
+        /** Number of games added. */
+        private int _games;
+    }
+
+    /** The counts of one position. */
+    private static final class Counts {
+        /** Games reaching the position, and those won by each side. */
+        private int _games, _whiteWins, _blackWins;
+        /** For each move (by code), the games in which it was played and
+         *  the number of those won by the side playing it. */
+        private final Map<Integer, int[]> _moves = new HashMap<>();
+    }
+
+    /** The database returned by standard(), once opened. */
+    private static PositionDatabase _standard;
+
+    /** The mapped file, or null if I am empty. */
+    private final ByteBuffer _buffer;
+    /** The number of plies covered. */
+    private final int _plies;
+    /** The numbers of positions and of moves in _buffer. */
+    private final int _positions, _moves;
+}
@@ -0,0 +1,79 @@
+package amazons;
+
+import org.junit.Test;
+
+import static amazons.Piece.*;
+import static org.junit.Assert.*;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/** JUnit tests of PositionDatabase.
+ *  @author Ethan Yim
+ */
+public class PositionDatabaseTest {
+
+    /** Tests that a PositionDatabase built from archived games counts
+     *  the games, results and moves of their positions. */
+    @Test
+    public void testPositionDatabase() throws IOException {
+        Random random = new Random(UnitTest.RANDOM_SEED);
+        List<Board> games = new ArrayList<>();
+        File archiveFile = File.createTempFile("games", ".archive");
+        archiveFile.deleteOnExit();
+        try (GameArchive.Writer writer =
+             new GameArchive.Writer(archiveFile.getPath())) {
+            for (int g = 0; g < POSITION_TEST_GAMES; g += 1) {
+                Board game = Match.opening(2 + random.nextInt(2), random);
+                games.add(game);
+                writer.add(game.moves(), g % 3 == 0 ? BLACK : WHITE, g,
+                           "white", "black");
+            }
+        }
+        PositionDatabase.Builder builder = new PositionDatabase.Builder(2);
+        assertEquals(POSITION_TEST_GAMES,
+                     builder.addArchive(GameArchive.open(
+                                            archiveFile.getPath())));
+        builder.add(games.get(0).moves(), BLACK);
+        File file = File.createTempFile("positions", ".db");
+        file.deleteOnExit();
+        builder.write(file.getPath());
+
+        PositionDatabase db = PositionDatabase.open(file.getPath());
+        assertEquals(2, db.plies());
+        Board start = new Board();
+        PositionDatabase.Position position = db.find(start);
+        assertEquals(POSITION_TEST_GAMES + 1, position.games());
+        assertEquals(POSITION_TEST_GAMES / 3 + 1, position.wins(BLACK));
+        assertEquals(position.games() - position.wins(BLACK),
+                     position.wins(WHITE));
+        int played = 0;
+        for (int k = 0; k < position.size(); k += 1) {
+            int code = start.canonicalCode(position.move(k));
+            int expected = code == start.canonicalCode(
+                games.get(0).moves().get(0)) ? 1 : 0;
+            for (Board game : games) {
+                if (start.canonicalCode(game.moves().get(0)) == code) {
+                    expected += 1;
+                }
+            }
+            assertEquals(expected, position.played(k));
+            assertTrue(k == 0
+                       || position.played(k - 1) >= position.played(k));
+            played += position.played(k);
+        }
+        assertEquals(position.games(), played);
+        assertTrue(start.isLegal(db.best(start, 1)));
+        assertNull(db.best(start, POSITION_TEST_GAMES + 2));
+
+        Board second = new Board();
+        second.makeMove(games.get(1).moves().get(0));
+        assertTrue(db.find(second).games() > 0);
+        assertNull(db.find(games.get(1)));
+    }
+
+    /** Games in the position database built for testing. */
+    static final int POSITION_TEST_GAMES = 30;
+}
@@ -0,0 +1,233 @@
+package amazons;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import static amazons.Piece.*;
+
+/** A depth-first proof-number (df-pn) search that tries to prove that
+ *  the side to move can win.  Each position has a proof number phi, the
+ *  number of positions that must still be shown to be won for the side
+ *  to move there to prove it wins, and a disproof number delta, the
+ *  same for showing it loses.  A position's phi is the least delta of
+ *  its children, and its delta is the sum of their phis.  The search
+ *  always expands the most-proving child, within thresholds that let it
+ *  stay in a subtree until a sibling looks more promising.
+ *
+ *  Proof and disproof numbers are kept in a transposition table of a
+ *  fixed size, chosen from a memory budget, keyed by
+ *  Board.canonicalHash, so that mirror images share entries.  Since
+ *  every move fills a square, no position repeats, so the table cannot
+ *  cause the cycles that trouble df-pn in other games.  The table is kept
+ *  from one call of prove to the next, so once a win is proved, the rest
+ *  of the winning line is found at once.
+ *
+ *  Positions in which no region is contested are decided without
+ *  search: whoever has more moves left in their own regions wins.  A
+ *  side that cannot move loses.  Sealed regions too large to count
+ *  exactly within REGION_NODE_LIMIT positions are instead searched like
+ *  contested ones.  Instances are not thread-safe.
+ *  @author Ethan Yim
+ */
+class ProofSearch {
+
+    /** Default size of the transposition table in bytes. */
+    static final int DEFAULT_MEMORY = 16 << 20;
+    /** Default number of positions to expand per call of prove. */
+    static final int DEFAULT_NODE_LIMIT = 20000;
+    /** Proof or disproof number of a decided position. */
+    static final int INFINITY = 1 << 28;
+    /** Most positions the region solver examines for one sealed
+     *  region. */
+    static final int REGION_NODE_LIMIT = RegionSolver.NODE_LIMIT_MOVE;
+    /** Bytes used by each entry of the transposition table. */
+    private static final int ENTRY_BYTES = Long.BYTES + 2 * Integer.BYTES;
+
+    /** A search using a table of at most MEMORY bytes and expanding at
+     *  most NODELIMIT positions per call of prove, which looks up sealed
+     *  regions in TABLEBASE (if not null). */
+    ProofSearch(long memory, int nodeLimit, RegionTablebase tablebase) {
+        int entries = Integer.highestOneBit((int) Math.max(
+            1, Math.min(memory / ENTRY_BYTES, 1 << (Integer.SIZE - 2))));
+        _keys = new long[entries];
+        _phi = new int[entries];
+        _delta = new int[entries];
+        _nodeLimit = nodeLimit;
+        _tablebase = tablebase;
+    }
+
+    /** Return the number of empty squares on BOARD that some queen can
+     *  still reach. */
+    static int reachable(Board board) {
+        int result = 0;
+        for (Region region : board.regions()) {
+            result += region.empties();
+        }
+        return result;
+    }
+
+    /** Return a move that wins for the side to move on BOARD, or null if
+     *  none is proved within the node limit. */
+    Move prove(Board board) {
+        Board b = new Board(board);
+        _nodes = 0;
+        search(b, INFINITY, INFINITY);
+        _disproved = delta(b.canonicalHash()) == 0;
+        if (phi(b.canonicalHash()) != 0) {
+            return null;
+        }
+        for (Move move : moves(b)) {
+            if (delta(b.canonicalHashAfter(move)) == 0) {
+                return move;
+            }
+        }
+        return null;
+    }
+
+    /** Return true iff the last call of prove showed that the side to
+     *  move loses. */
+    boolean disproved() {
+        return _disproved;
+    }
+
+    /** Return the number of positions expanded by the last call of
+     *  prove. */
+    int nodes() {
+        return _nodes;
+    }
+
+    /** Search BOARD until its proof number reaches PHILIMIT, its
+     *  disproof number reaches DELTALIMIT, or the node limit is reached,
+     *  recording the numbers found in the table.  BOARD is restored
+     *  before returning. */
+    private void search(Board board, int phiLimit, int deltaLimit) {
+        long hash = board.canonicalHash();
+        if (phi(hash) == 0 || delta(hash) == 0) {
+            return;
+        }
+        int outcome = outcome(board);
+        if (outcome != 0) {
+            store(hash, outcome > 0 ? 0 : INFINITY,
+                  outcome > 0 ? INFINITY : 0);
+            return;
+        }
+        List<Move> moves = moves(board);
+        long[] hashes = new long[moves.size()];
+        for (int k = 0; k < hashes.length; k += 1) {
+            hashes[k] = board.canonicalHashAfter(moves.get(k));
+        }
+        while (true) {
+            int phi = INFINITY, delta = 0, second = INFINITY;
+            int best = 0, bestPhi = 0;
+            for (int k = 0; k < hashes.length; k += 1) {
+                int childPhi = phi(hashes[k]), childDelta = delta(hashes[k]);
+                delta = Math.min(INFINITY, delta + childPhi);
+                if (childDelta < phi) {
+                    second = phi;
+                    phi = childDelta;
+                    best = k;
+                    bestPhi = childPhi;
+                } else if (childDelta < second) {
+                    second = childDelta;
+                }
+            }
+            store(hash, phi, delta);
+            if (phi >= phiLimit || delta >= deltaLimit
+                || _nodes >= _nodeLimit) {
+                return;
+            }
+            board.makeMove(moves.get(best));
+            _nodes += 1;
+            search(board,
+                   Math.min(INFINITY, deltaLimit - delta + bestPhi),
+                   Math.min(phiLimit, second + 1));
+            board.retract();
+        }
+    }
+
+    /** Return 1 if the side to move on BOARD has won, -1 if it has lost,
+     *  and 0 if the game is undecided. */
+    private int outcome(Board board) {
+        int mine, theirs;
+        mine = theirs = 0;
+        Piece side = board.turn();
+        for (Region region : board.regions()) {
+            int moves = region.contested() ? -1 : movesLeft(board, region);
+            if (moves < 0) {
+                return board.legalMoves(side).hasNext() ? 0 : -1;
+            }
+            if (region.owner() == side) {
+                mine += moves;
+            } else {
+                theirs += moves;
+            }
+        }
+        return mine > theirs ? 1 : -1;
+    }
+
+    /** Return the exact number of moves left to the owner of REGION, a
+     *  sealed region of BOARD, or -1 if it cannot be found within
+     *  REGION_NODE_LIMIT positions. */
+    private int movesLeft(Board board, Region region) {
+        if (_tablebase != null) {
+            int moves = _tablebase.movesLeft(board, region);
+            if (moves >= 0) {
+                return moves;
+            }
+        }
+        return _solver.solveExactly(board, region, REGION_NODE_LIMIT);
+    }
+
+    /** Return the legal moves for the side to move on BOARD. */
+    private static List<Move> moves(Board board) {
+        List<Move> result = new ArrayList<>();
+        for (Iterator<Move> m = board.legalMoves(); m.hasNext(); ) {
+            result.add(m.next());
+        }
+        return result;
+    }
+
+    /** Return the slot in the table for the position with hash HASH. */
+    private int slot(long hash) {
+        return (int) (hash ^ (hash >>> Integer.SIZE)) & (_keys.length - 1);
+    }
+
+    /** Return the proof number recorded for HASH, or 1 if there is
+     *  none. */
+    private int phi(long hash) {
+        int slot = slot(hash);
+        return _keys[slot] == hash ? _phi[slot] : 1;
+    }
+
+    /** Return the disproof number recorded for HASH, or 1 if there is
+     *  none. */
+    private int delta(long hash) {
+        int slot = slot(hash);
+        return _keys[slot] == hash ? _delta[slot] : 1;
+    }
+
+    /** Record PHI and DELTA for HASH, replacing whatever shared its
+     *  slot. */
+    private void store(long hash, int phi, int delta) {
+        int slot = slot(hash);
+        _keys[slot] = hash;
+        _phi[slot] = phi;
+        _delta[slot] = delta;
+    }
+
+    /** Hashes of the positions in the table. */
+    private final long[] _keys;
+    /** Proof and disproof numbers of the positions in the table. */
+    private final int[] _phi, _delta;
+    /** Most positions expanded per call of prove. */
+    private final int _nodeLimit;
+    /** Positions expanded so far in this call of prove. */
+    private int _nodes;
+    /** True iff the last call of prove showed the side to move loses. */
+    private boolean _disproved;
+    /** Table of small sealed regions, or null. */
+    private final RegionTablebase _tablebase;
+    /** Solver for sealed regions not in the tablebase. */
+    private final RegionSolver _solver = new RegionSolver();
+}
@@ -0,0 +1,41 @@
+package amazons;
+
+import org.junit.Test;
+
+import static amazons.Piece.*;
+import static org.junit.Assert.*;
+import java.util.Random;
+
+/** JUnit tests of ProofSearch.
+ *  @author Ethan Yim
+ */
+public class ProofSearchTest {
+
+    /** Tests the proof search against an exhaustive minimax search on
+     *  small contested regions. */
+    @Test
+    public void testProofSearch() {
+        Random random = new Random(UnitTest.RANDOM_SEED);
+        ProofSearch prover = new ProofSearch(1 << 20, 100000, null);
+        int wins, losses;
+        wins = losses = 0;
+        for (int trial = 0; trial < 100; trial += 1) {
+            Board b = UnitTest.sealedRegion(random, 4 + random.nextInt(5), 2);
+            b.put(BLACK, UnitTest.firstQueen(b));
+            if (!b.hasContestedRegion()) {
+                continue;
+            }
+            Move move = prover.prove(b);
+            if (UnitTest.wins(b)) {
+                assertNotNull(move);
+                assertFalse(UnitTest.wins(UnitTest.afterMove(b, move)));
+                wins += 1;
+            } else {
+                assertNull(move);
+                assertTrue(prover.disproved());
+                losses += 1;
+            }
+        }
+        assertTrue(wins > 0 && losses > 0);
+    }
+}
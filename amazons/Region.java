@@ -0,0 +1,102 @@
+package amazons;
+
+import static amazons.Piece.*;
+
+/** A region of the board: a maximal set of squares free of spears that
+ *  are connected by king steps, with at least one queen in it.  Queens
+ *  can never leave their region, nor throw spears out of it, so once the
+ *  board has split into several regions each one is a separate game.
+ *  A region holding queens of only one color is sealed: its owner can
+ *  make moves there undisturbed.  Regions are immutable, and squares are
+ *  recorded as a 100-bit set held in two longs.
+ *  @author Ethan Yim
+ */
+final class Region {
+
+    /** Number of squares whose bits go in the low word of a set. */
+    static final int LOW_BITS = Long.SIZE;
+
+    /** A region consisting of the squares whose bits are set in LOW and
+     *  HIGH, containing WHITEQUEENS white and BLACKQUEENS black queens. */
+    Region(long low, long high, int whiteQueens, int blackQueens) {
+        _low = low;
+        _high = high;
+        _whiteQueens = whiteQueens;
+        _blackQueens = blackQueens;
+    }
+
+    /** Return true iff S is in this region. */
+    boolean contains(Square s) {
+        return contains(_low, _high, s.index());
+    }
+
+    /** Return true iff the set of squares LOW, HIGH contains the square
+     *  with index INDEX. */
+    static boolean contains(long low, long high, int index) {
+        if (index < LOW_BITS) {
+            return (low & (1L << index)) != 0;
+        } else {
+            return (high & (1L << (index - LOW_BITS))) != 0;
+        }
+    }
+
+    /** Return the low word of my set of squares (indices 0-63). */
+    long low() {
+        return _low;
+    }
+
+    /** Return the high word of my set of squares (indices 64-99). */
+    long high() {
+        return _high;
+    }
+
+    /** Return the number of squares in me, including those holding
+     *  queens. */
+    int size() {
+        return Long.bitCount(_low) + Long.bitCount(_high);
+    }
+
+    /** Return the number of empty squares in me. */
+    int empties() {
+        return size() - _whiteQueens - _blackQueens;
+    }
+
+    /** Return the number of queens of color SIDE in me. */
+    int queens(Piece side) {
+        return side == WHITE ? _whiteQueens : _blackQueens;
+    }
+
+    /** Return the only color with queens in me, or EMPTY if I am
+     *  contested by both. */
+    Piece owner() {
+        if (_blackQueens == 0) {
+            return WHITE;
+        } else if (_whiteQueens == 0) {
+            return BLACK;
+        } else {
+            return EMPTY;
+        }
+    }
+
+    /** Return true iff both colors have queens in me. */
+    boolean contested() {
+        return owner() == EMPTY;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder result = new StringBuilder();
+        for (int i = 0; i < DistanceMap.SQUARES; i += 1) {
+            if (contains(_low, _high, i)) {
+                result.append(result.length() == 0 ? "{" : " ");
+                result.append(Square.sq(i));
+            }
+        }
+        return result.append("}").toString();
+    }
+
+    /** The squares in me. */
+    private final long _low, _high;
+    /** The number of queens of each color in me. */
+    private final int _whiteQueens, _blackQueens;
+}
@@ -0,0 +1,471 @@
+package amazons;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import static amazons.Piece.*;
+
+/** Counts the moves the owner of a sealed region can still make in it.
+ *  Since no opposing queen can interfere, this is a longest-path problem
+ *  rather than a minimax one: the owner simply wants the longest
+ *  sequence of moves.  Every move fills exactly one square (the queen
+ *  vacates one and occupies another, and the spear fills a third), so
+ *  the number of empty squares is an upper bound, but it is not always
+ *  achievable, because spears can cut squares off from the queens.
+ *
+ *  Small regions are solved exactly by a depth-first search over the
+ *  states of the region, memoised on the set of empty squares and the
+ *  set of queen squares, and cut short whenever a line reaching the upper
+ *  bound is found.  Larger regions, and searches that examine too many
+ *  positions, fall back to a greedy estimate in which queens creep one
+ *  square at a time and throw their spear back where they came from,
+ *  which is a lower bound.  Since movesLeft is called at the leaves of
+ *  the main search, it is held to tighter limits than bestMove, which is
+ *  called once per move.  Results are cached across calls, and regions
+ *  covered by a RegionTablebase are looked up rather than searched.
+ *  Instances are not thread-safe.
+ *  @author Ethan Yim
+ */
+class RegionSolver {
+
+    /** The largest region, in squares, that movesLeft solves exactly. */
+    static final int MAX_EXACT = 16;
+
+    /** The most positions examined by movesLeft before giving up and
+     *  using the estimate. */
+    static final int NODE_LIMIT = 2000;
+
+    /** The largest region, in squares, that bestMove and solveExactly
+     *  solve exactly. */
+    static final int MAX_EXACT_MOVE = 32;
+
+    /** The most positions examined by bestMove before giving up and
+     *  using the estimate. */
+    static final int NODE_LIMIT_MOVE = 200000;
+
+    /** The largest region that can be mapped onto the bits of a long. */
+    private static final int MAX_LOCAL = Long.SIZE;
+
+    /** The largest region whose states search tells apart in its memo,
+     *  whose keys hold the empty squares in their upper half and the
+     *  queens in their lower half. */
+    private static final int MAX_KEYED = Integer.SIZE;
+
+    /** An odd multiplier that spreads the bits of the memo keys, whose
+     *  halves would otherwise cancel out in Long.hashCode. */
+    private static final long KEY_MIX = 0x9E3779B97F4A7C15L;
+
+    /** Clear the cache of results when it grows past this many. */
+    private static final int CACHE_LIMIT = 1 << 16;
+
+    /** A solver that searches every region itself. */
+    RegionSolver() {
+        this(null);
+    }
+
+    /** A solver that looks regions up in TABLEBASE, if it is not null,
+     *  before searching them. */
+    RegionSolver(RegionTablebase tablebase) {
+        _tablebase = tablebase;
+    }
+
+    /** Return the number of regions so far looked up in the tablebase or
+     *  found in the caches, rather than solved. */
+    long hits() {
+        return _hits;
+    }
+
+    /** Return the number of moves the owner of REGION, a sealed region of
+     *  BOARD, can make in it, or an estimate of it for regions too large
+     *  to solve within MAX_EXACT squares and NODE_LIMIT positions. */
+    int movesLeft(Board board, Region region) {
+        _lastExact = false;
+        if (region.size() > MAX_LOCAL) {
+            return region.empties();
+        }
+        if (_tablebase != null) {
+            int moves = _tablebase.movesLeft(board, region);
+            if (moves >= 0) {
+                _hits += 1;
+                _lastExact = true;
+                return moves;
+            }
+        }
+        Key key = key(board, region);
+        Integer cached = _results.get(key);
+        if (cached != null) {
+            _hits += 1;
+            _lastExact = cached >= 0;
+            return _lastExact ? cached : ~cached;
+        }
+        load(board, region, MAX_EXACT, NODE_LIMIT);
+        int result = solve(_initialEmpty, _initialQueens);
+        _lastExact = _exact;
+        remember(_results, key, _exact ? result : ~result);
+        return result;
+    }
+
+    /** Return true iff the result of the last call of movesLeft was
+     *  exact rather than an estimate. */
+    boolean exact() {
+        return _lastExact;
+    }
+
+    /** Return the number of moves the owner of REGION, a sealed region of
+     *  BOARD, can make in it, examining at most NODELIMIT positions and
+     *  without consulting the tablebase, or -1 if REGION has more than
+     *  MAX_EXACT_MOVE squares or the search needs more positions.
+     *  Results, including failures, are cached apart from those of
+     *  movesLeft, which may be estimates, so a given solver should always
+     *  be called with the same NODELIMIT. */
+    int solveExactly(Board board, Region region, int nodeLimit) {
+        if (region.size() > MAX_EXACT_MOVE) {
+            return -1;
+        }
+        Key key = key(board, region);
+        Integer cached = _exactResults.get(key);
+        if (cached != null) {
+            _hits += 1;
+            return cached;
+        }
+        load(board, region, MAX_EXACT_MOVE, nodeLimit);
+        int result = solve(_initialEmpty, _initialQueens);
+        if (!_exact) {
+            result = -1;
+        }
+        remember(_exactResults, key, result);
+        return result;
+    }
+
+    /** Record RESULT for KEY in CACHE, first emptying CACHE if it is
+     *  full. */
+    private static void remember(Map<Key, Integer> cache, Key key,
+                                 int result) {
+        if (cache.size() >= CACHE_LIMIT) {
+            cache.clear();
+        }
+        cache.put(key, result);
+    }
+
+    /** Return a move for the owner of REGION, a sealed region of BOARD,
+     *  that keeps as many further moves as possible in REGION, or null if
+     *  the owner has no moves there. */
+    Move bestMove(Board board, Region region) {
+        Piece owner = region.owner();
+        if (region.size() > MAX_LOCAL) {
+            return first(board.legalMoves(owner, region));
+        }
+        load(board, region, MAX_EXACT_MOVE, NODE_LIMIT_MOVE);
+        long empty = _initialEmpty, queens = _initialQueens;
+        int target = solve(empty, queens);
+        if (target == 0) {
+            return null;
+        }
+        if (_exact) {
+            Move move = optimalMove(empty, queens, target);
+            if (move != null) {
+                return move;
+            }
+        }
+        greedy(empty, queens);
+        return Move.mv(_squares[_firstQueen], _squares[_firstTarget],
+                       _squares[_firstQueen]);
+    }
+
+    /** Return a move from the state EMPTY, QUEENS after which TARGET - 1
+     *  more moves can be made, or null if the search gives out before one
+     *  is found. */
+    private Move optimalMove(long empty, long queens, int target) {
+        for (int q = 0; q < _size; q += 1) {
+            if (!has(queens, q)) {
+                continue;
+            }
+            for (int dir = 0; dir < 8; dir += 1) {
+                for (int t : _rays[q][dir]) {
+                    if (!has(empty, t)) {
+                        break;
+                    }
+                    long vacated = (empty | bit(q)) & ~bit(t);
+                    long moved = (queens & ~bit(q)) | bit(t);
+                    for (int d2 = 0; d2 < 8; d2 += 1) {
+                        for (int s : _rays[t][d2]) {
+                            if (!has(vacated, s)) {
+                                break;
+                            }
+                            if (1 + solve(vacated & ~bit(s), moved)
+                                == target && _exact) {
+                                return Move.mv(_squares[q], _squares[t],
+                                               _squares[s]);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    /** Return the first element of MOVES, or null if it is empty. */
+    private static Move first(Iterator<Move> moves) {
+        return moves.hasNext() ? moves.next() : null;
+    }
+
+    /** Return the key under which the result for REGION, a sealed region
+     *  of BOARD, is cached. */
+    private static Key key(Board board, Region region) {
+        long queens = 0;
+        int k = 0;
+        for (int i = 0; i < DistanceMap.SQUARES; i += 1) {
+            if (Region.contains(region.low(), region.high(), i)) {
+                if (board.get(Square.sq(i)) != EMPTY) {
+                    queens |= bit(k);
+                }
+                k += 1;
+            }
+        }
+        return new Key(region.low(), region.high(), queens);
+    }
+
+    /** Set up the local numbering of the squares of REGION on BOARD, its
+     *  initial empty and queen sets, and the rays between its squares,
+     *  to be solved exactly if it has at most MAXEXACT squares and the
+     *  search examines at most NODELIMIT positions. */
+    private void load(Board board, Region region, int maxExact,
+                      int nodeLimit) {
+        _size = 0;
+        _initialEmpty = _initialQueens = 0;
+        for (int i = 0; i < DistanceMap.SQUARES; i += 1) {
+            Square s = Square.sq(i);
+            if (region.contains(s)) {
+                _local[i] = _size;
+                _squares[_size] = s;
+                if (board.get(s) == EMPTY) {
+                    _initialEmpty |= bit(_size);
+                } else {
+                    _initialQueens |= bit(_size);
+                }
+                _size += 1;
+            } else {
+                _local[i] = -1;
+            }
+        }
+        for (int k = 0; k < _size; k += 1) {
+            for (int dir = 0; dir < 8; dir += 1) {
+                int len = 0;
+                for (Square s = _squares[k].queenMove(dir, 1);
+                     s != null && _local[s.index()] >= 0;
+                     s = s.queenMove(dir, 1)) {
+                    _ray[len] = _local[s.index()];
+                    len += 1;
+                }
+                _rays[k][dir] = Arrays.copyOf(_ray, len);
+            }
+        }
+        _memo = new HashMap<>();
+        _nodes = 0;
+        _nodeLimit = nodeLimit;
+        _exact = _size <= Math.min(maxExact, MAX_KEYED);
+        if (!_exact) {
+            _estimate = greedy(_initialEmpty, _initialQueens);
+        }
+    }
+
+    /** Return the number of moves available from the region state in
+     *  which the local squares in EMPTY are empty and those in QUEENS hold
+     *  queens, exactly if the search stays within the node limit and as
+     *  an estimate otherwise (clearing _exact). */
+    private int solve(long empty, long queens) {
+        if (!_exact) {
+            return _estimate;
+        }
+        int result = search(empty, queens);
+        if (!_exact) {
+            _estimate = Math.max(result, greedy(empty, queens));
+            return _estimate;
+        }
+        return result;
+    }
+
+    /** Return the length of the longest sequence of moves from the state
+     *  EMPTY, QUEENS, or the longest one found before the node limit was
+     *  reached.  The region has at most MAX_KEYED squares. */
+    private int search(long empty, long queens) {
+        long key = ((empty << Integer.SIZE) | queens) * KEY_MIX;
+        Integer memo = _memo.get(key);
+        if (memo != null) {
+            return memo;
+        }
+        int bound = Long.bitCount(empty);
+        int best = 0;
+        _nodes += 1;
+        if (_nodes > _nodeLimit) {
+            _exact = false;
+            return best;
+        }
+        search:
+        for (int q = 0; q < _size; q += 1) {
+            if (!has(queens, q)) {
+                continue;
+            }
+            for (int dir = 0; dir < 8; dir += 1) {
+                for (int t : _rays[q][dir]) {
+                    if (!has(empty, t)) {
+                        break;
+                    }
+                    long vacated = (empty | bit(q)) & ~bit(t);
+                    long moved = (queens & ~bit(q)) | bit(t);
+                    for (int d2 = 0; d2 < 8; d2 += 1) {
+                        for (int s : _rays[t][d2]) {
+                            if (!has(vacated, s)) {
+                                break;
+                            }
+                            best = Math.max(best,
+                                            1 + search(vacated & ~bit(s),
+                                                       moved));
+                            if (best == bound || !_exact) {
+                                break search;
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        if (_exact) {
+            _memo.put(key, best);
+        }
+        return best;
+    }
+
+    /** Return the number of moves made from the state EMPTY, QUEENS by
+     *  repeatedly moving a queen to the adjacent empty square with the
+     *  fewest empty neighbors and throwing its spear back to where it
+     *  came from. */
+    private int greedy(long empty, long queens) {
+        int moves = 0;
+        while (true) {
+            int bestQueen, bestTarget, fewest;
+            bestQueen = bestTarget = -1;
+            fewest = Integer.MAX_VALUE;
+            for (int q = 0; q < _size; q += 1) {
+                if (!has(queens, q)) {
+                    continue;
+                }
+                for (int dir = 0; dir < 8; dir += 1) {
+                    int[] ray = _rays[q][dir];
+                    if (ray.length == 0 || !has(empty, ray[0])) {
+                        continue;
+                    }
+                    int t = ray[0], exits = 0;
+                    for (int d2 = 0; d2 < 8; d2 += 1) {
+                        int[] next = _rays[t][d2];
+                        if (next.length > 0 && has(empty, next[0])) {
+                            exits += 1;
+                        }
+                    }
+                    if (exits < fewest) {
+                        fewest = exits;
+                        bestQueen = q;
+                        bestTarget = t;
+                    }
+                }
+            }
+            if (bestQueen < 0) {
+                return moves;
+            }
+            if (moves == 0) {
+                _firstQueen = bestQueen;
+                _firstTarget = bestTarget;
+            }
+            empty &= ~bit(bestTarget);
+            queens = (queens & ~bit(bestQueen)) | bit(bestTarget);
+            moves += 1;
+        }
+    }
+
+    /** Return the bit for local square K. */
+    private static long bit(int k) {
+        return 1L << k;
+    }
+
+    /** Return true iff local square K is in the set SET. */
+    private static boolean has(long set, int k) {
+        return (set & bit(k)) != 0;
+    }
+
+    /** The key identifying a sealed region in the cache of results: its
+     *  squares and which of them hold queens. */
+    private static final class Key {
+        /** A key for the region with squares LOW, HIGH (as for Region)
+         *  whose local squares QUEENS hold queens. */
+        Key(long low, long high, long queens) {
+            _low = low;
+            _high = high;
+            _queens = queens;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return _low == other._low && _high == other._high
+                && _queens == other._queens;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(_low * 31 + _high) * 31
+                + Long.hashCode(_queens);
+        }
+
+        /** The region's squares. */
+        private final long _low, _high;
+        /** The region's queens, as local squares. */
+        private final long _queens;
+    }
+
+    /** Table of small regions consulted by movesLeft, or null. */
+    private final RegionTablebase _tablebase;
+    /** Number of regions looked up or found in the caches. */
+    private long _hits;
+
+    /** Results of previous calls to movesLeft, complemented if they are
+     *  estimates. */
+    private final Map<Key, Integer> _results = new HashMap<>();
+    /** Results of previous calls to solveExactly. */
+    private final Map<Key, Integer> _exactResults = new HashMap<>();
+    /** Results for the states of the region being solved.  It is replaced
+     *  rather than cleared for each region, since clearing takes time in
+     *  proportion to the largest size it has had. */
+    private Map<Long, Integer> _memo = new HashMap<>();
+
+    /** Number of squares in the region being solved. */
+    private int _size;
+    /** Local number of each square of the board, or -1 for squares
+     *  outside the region being solved. */
+    private final int[] _local = new int[DistanceMap.SQUARES];
+    /** The square with each local number. */
+    private final Square[] _squares = new Square[MAX_LOCAL];
+    /** _rays[k][dir] lists the local squares met going from local square
+     *  k in direction dir, up to the edge of the region. */
+    private final int[][][] _rays = new int[MAX_LOCAL][8][];
+    /** Scratch space for building a ray. */
+    private final int[] _ray = new int[Board.SIZE];
+    /** The empty squares and queens of the region being solved. */
+    private long _initialEmpty, _initialQueens;
+    /** Positions examined so far in the current solution, and the most
+     *  that may be. */
+    private int _nodes, _nodeLimit;
+    /** True while the current solution is exact. */
+    private boolean _exact;
+    /** True iff the last result of movesLeft was exact. */
+    private boolean _lastExact;
+    /** The estimate used once the current solution is not exact. */
+    private int _estimate;
+    /** The queen moved and the square it moves to in the first move of
+     *  the last call to greedy. */
+    private int _firstQueen, _firstTarget;
+}
@@ -0,0 +1,102 @@
+package amazons;
+
+import org.junit.Test;
+
+import static amazons.Piece.*;
+import static org.junit.Assert.*;
+import java.util.Iterator;
+import java.util.Random;
+
+/** JUnit tests of RegionSolver.
+ *  @author Ethan Yim
+ */
+public class RegionSolverTest {
+
+    /** Tests the sealed-region solver against an exhaustive search on
+     *  small random regions, and checks that its chosen moves are
+     *  optimal. */
+    @Test
+    public void testRegionSolver() {
+        Random random = new Random(UnitTest.RANDOM_SEED);
+        RegionSolver solver = new RegionSolver();
+        boolean sawDefect = false;
+        for (int trial = 0; trial < 200; trial += 1) {
+            Board b = UnitTest.sealedRegion(random, 3 + random.nextInt(5),
+                                            1 + random.nextInt(2));
+            Region region = b.regions().get(0);
+            int expected = longestFill(b);
+            assertEquals(expected, solver.movesLeft(b, region));
+            sawDefect |= expected < region.empties();
+            if (expected > 0) {
+                fill(b, solver.bestMove(b, region));
+                int left = 0;
+                for (Region part : b.regions()) {
+                    left += solver.movesLeft(b, part);
+                }
+                assertEquals(expected - 1, left);
+            }
+        }
+        assertTrue(sawDefect);
+    }
+
+    /** Tests that solveExactly agrees with an exhaustive search on small
+     *  regions, and gives up on regions too large to key or to search
+     *  within its node limit. */
+    @Test
+    public void testSolveExactly() {
+        Random random = new Random(UnitTest.RANDOM_SEED);
+        RegionSolver solver = new RegionSolver();
+        for (int trial = 0; trial < 50; trial += 1) {
+            Board b = UnitTest.sealedRegion(random, 3 + random.nextInt(5),
+                                            1 + random.nextInt(2));
+            assertEquals(longestFill(b),
+                         solver.solveExactly(b, b.regions().get(0),
+                                             Integer.MAX_VALUE));
+        }
+        Board big = UnitTest.sealedRegion(random,
+                                          RegionSolver.MAX_EXACT_MOVE + 1, 1);
+        assertEquals(-1, solver.solveExactly(big, big.regions().get(0),
+                                             Integer.MAX_VALUE));
+        Board medium = UnitTest.sealedRegion(random, 20, 2);
+        assertEquals(-1, new RegionSolver()
+                     .solveExactly(medium, medium.regions().get(0), 1));
+    }
+
+    /** Tests that the solver reports which of its results are exact
+     *  and which are estimates, including those found in its cache. */
+    @Test
+    public void testExact() {
+        Random random = new Random(UnitTest.RANDOM_SEED);
+        RegionSolver solver = new RegionSolver();
+        Board small = UnitTest.sealedRegion(random, 6, 1);
+        Board large =
+            UnitTest.sealedRegion(random, RegionSolver.MAX_EXACT + 4, 1);
+        solver.movesLeft(small, small.regions().get(0));
+        assertTrue(solver.exact());
+        solver.movesLeft(large, large.regions().get(0));
+        assertFalse(solver.exact());
+        solver.movesLeft(small, small.regions().get(0));
+        assertTrue(solver.exact());
+        solver.movesLeft(large, large.regions().get(0));
+        assertFalse(solver.exact());
+    }
+
+    /** Return the greatest number of moves White can make in a row on B,
+     *  found by trying every sequence. */
+    private int longestFill(Board b) {
+        int best = 0;
+        for (Iterator<Move> m = b.legalMoves(WHITE); m.hasNext(); ) {
+            Board next = new Board(b);
+            fill(next, m.next());
+            best = Math.max(best, 1 + longestFill(next));
+        }
+        return best;
+    }
+
+    /** Make White's MOVE on B, leaving it White's turn. */
+    private void fill(Board b, Move move) {
+        b.put(EMPTY, move.from());
+        b.put(WHITE, move.to());
+        b.put(SPEAR, move.spear());
+    }
+}
@@ -0,0 +1,369 @@
+package amazons;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static amazons.Piece.*;
+
+/** A table of the number of moves left in small sealed regions, read
+ *  through a memory-mapped file so that no parsing or heap loading is
+ *  needed at startup.
+ *
+ *  Regions are identified by their shape and the squares of their
+ *  queens, canonicalised under translation and the eight symmetries of
+ *  the square (queen moves are preserved by all of them, and a spear
+ *  blocks a queen just as the edge of the board does).  A canonical
+ *  region is drawn in an 8x8 frame, one bit per square, and its key is
+ *  the least (shape, queens) pair of bit sets over all the symmetries.
+ *  The generator covers every region of up to maxSize() squares that
+ *  fits the frame, with any placement of one to four queens, but only
+ *  records the regions whose owner cannot fill every empty square;
+ *  any other covered region is worth its number of empty squares.
+ *
+ *  The file consists of a header of four ints (MAGIC, VERSION, the
+ *  maximum region size, and the number of entries), followed by the
+ *  entries, sorted by shape and then queens, as unsigned numbers.  Each
+ *  entry is the shape, the queens (both longs) and the number of moves
+ *  (a byte).
+ *  @author Ethan Yim
+ */
+class RegionTablebase {
+
+    /** First int of a tablebase file. */
+    static final int MAGIC = 0x414d5442;
+    /** Version of the file format. */
+    static final int VERSION = 1;
+    /** Width and height of the frame in which regions are drawn. */
+    static final int FRAME = 8;
+    /** Largest number of queens of one color. */
+    static final int MAX_QUEENS = 4;
+    /** Size of the header in bytes. */
+    private static final int HEADER_BYTES = 4 * Integer.BYTES;
+    /** Size of one entry in bytes. */
+    private static final int ENTRY_BYTES = 2 * Long.BYTES + 1;
+    /** Number of symmetries of the square. */
+    private static final int SYMMETRIES = 8;
+    /** Name of the system property giving the tablebase file. */
+    static final String FILE_PROPERTY = "amazons.tablebase";
+    /** File used when the property is not set. */
+    static final String DEFAULT_FILE = "regions.tb";
+
+    /** An empty tablebase, covering no regions. */
+    private RegionTablebase() {
+        _entries = null;
+        _count = 0;
+        _maxSize = 0;
+    }
+
+    /** A tablebase whose contents are in the mapped file BUFFER. */
+    private RegionTablebase(ByteBuffer buffer) throws IOException {
+        if (buffer.capacity() < HEADER_BYTES || buffer.getInt(0) != MAGIC
+            || buffer.getInt(Integer.BYTES) != VERSION) {
+            throw new IOException("not a region tablebase");
+        }
+        _maxSize = buffer.getInt(2 * Integer.BYTES);
+        _count = buffer.getInt(3 * Integer.BYTES);
+        if (buffer.capacity() != HEADER_BYTES + (long) _count * ENTRY_BYTES) {
+            throw new IOException("truncated region tablebase");
+        }
+        _entries = buffer;
+    }
+
+    /** Return the tablebase in FILE, mapped into memory. */
+    static RegionTablebase open(String file) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(file),
+                                                    StandardOpenOption.READ)) {
+            return new RegionTablebase(
+                channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /** Return the tablebase named by the amazons.tablebase property (by
+     *  default, regions.tb in the current directory), opened the first
+     *  time it is asked for.  If there is no such file, or it cannot be
+     *  read, return an empty tablebase. */
+    static RegionTablebase standard() {
+        synchronized (RegionTablebase.class) {
+            if (_standard == null) {
+                String file = System.getProperty(FILE_PROPERTY, DEFAULT_FILE);
+                _standard = new RegionTablebase();
+                if (Files.isReadable(Paths.get(file))) {
+                    try {
+                        _standard = open(file);
+                    } catch (IOException excp) {
+                        System.err.printf("Ignoring tablebase %s: %s%n",
+                                          file, excp.getMessage());
+                    }
+                }
+            }
+            return _standard;
+        }
+    }
+
+    /** Return the largest region, in squares, that I cover. */
+    int maxSize() {
+        return _maxSize;
+    }
+
+    /** Return the number of regions I record explicitly. */
+    int size() {
+        return _count;
+    }
+
+    /** Return the number of moves the owner of REGION, a sealed region of
+     *  BOARD, can make in it, or -1 if I do not cover it.  This may be
+     *  called from several threads at once. */
+    int movesLeft(Board board, Region region) {
+        if (region.size() > _maxSize) {
+            return -1;
+        }
+        int[] cols = new int[_maxSize], rows = new int[_maxSize];
+        boolean[] queens = new boolean[_maxSize];
+        long[] key = new long[2];
+        int n = 0;
+        for (int i = 0; i < DistanceMap.SQUARES; i += 1) {
+            Square s = Square.sq(i);
+            if (region.contains(s)) {
+                cols[n] = s.col();
+                rows[n] = s.row();
+                queens[n] = board.get(s) != EMPTY;
+                n += 1;
+            }
+        }
+        if (!canonical(n, cols, rows, queens, key)) {
+            return -1;
+        }
+        int moves = lookup(key[0], key[1]);
+        return moves >= 0 ? moves : region.empties();
+    }
+
+    /** Return the number of moves recorded for the canonical region with
+     *  shape SHAPE and queens QUEENS, or -1 if it is not recorded. */
+    int lookup(long shape, long queens) {
+        int lo = 0, hi = _count - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int at = HEADER_BYTES + mid * ENTRY_BYTES;
+            int cmp = Long.compareUnsigned(_entries.getLong(at), shape);
+            if (cmp == 0) {
+                cmp = Long.compareUnsigned(_entries.getLong(at + Long.BYTES),
+                                           queens);
+            }
+            if (cmp < 0) {
+                lo = mid + 1;
+            } else if (cmp > 0) {
+                hi = mid - 1;
+            } else {
+                return _entries.get(at + 2 * Long.BYTES);
+            }
+        }
+        return -1;
+    }
+
+    /** Set KEY[0] and KEY[1] to the canonical shape and queens of the
+     *  region of N squares whose columns and rows are in COLS and ROWS
+     *  and which hold queens where QUEENS is true.  Return false if the
+     *  region does not fit in the frame. */
+    static boolean canonical(int n, int[] cols, int[] rows,
+                             boolean[] queens, long[] key) {
+        boolean found = false;
+        for (int sym = 0; sym < SYMMETRIES; sym += 1) {
+            int minX, minY, maxX, maxY;
+            minX = minY = Integer.MAX_VALUE;
+            maxX = maxY = Integer.MIN_VALUE;
+            for (int k = 0; k < n; k += 1) {
+                int x = transformX(sym, cols[k], rows[k]),
+                    y = transformY(sym, cols[k], rows[k]);
+                minX = Math.min(minX, x);
+                maxX = Math.max(maxX, x);
+                minY = Math.min(minY, y);
+                maxY = Math.max(maxY, y);
+            }
+            if (maxX - minX >= FRAME || maxY - minY >= FRAME) {
+                continue;
+            }
+            long shape, queenBits;
+            shape = queenBits = 0;
+            for (int k = 0; k < n; k += 1) {
+                long bit = 1L << ((transformY(sym, cols[k], rows[k]) - minY)
+                                  * FRAME
+                                  + transformX(sym, cols[k], rows[k]) - minX);
+                shape |= bit;
+                if (queens[k]) {
+                    queenBits |= bit;
+                }
+            }
+            int cmp = Long.compareUnsigned(shape, key[0]);
+            if (!found || cmp < 0
+                || cmp == 0 && Long.compareUnsigned(queenBits, key[1]) < 0) {
+                key[0] = shape;
+                key[1] = queenBits;
+                found = true;
+            }
+        }
+        return found;
+    }
+
+    /** Return the x coordinate of (X, Y) under symmetry SYM: bit 2 of SYM
+     *  transposes, and bits 0 and 1 then negate x and y. */
+    private static int transformX(int sym, int x, int y) {
+        int t = (sym & 4) != 0 ? y : x;
+        return (sym & 1) != 0 ? -t : t;
+    }
+
+    /** Return the y coordinate of (X, Y) under symmetry SYM. */
+    private static int transformY(int sym, int x, int y) {
+        int t = (sym & 4) != 0 ? x : y;
+        return (sym & 2) != 0 ? -t : t;
+    }
+
+    /** Write to FILE a tablebase covering all regions of up to MAXSIZE
+     *  squares.  Report progress on PROGRESS, unless it is null. */
+    static void generate(int maxSize, String file, PrintStream progress)
+        throws IOException {
+        List<long[]> entries = new ArrayList<>();
+        RegionSolver solver = new RegionSolver();
+        Set<Long> shapes = new HashSet<>();
+        shapes.add(1L);
+        for (int size = 1; size <= maxSize; size += 1) {
+            int recorded = entries.size();
+            for (long shape : shapes) {
+                solveShape(shape, solver, entries);
+            }
+            if (progress != null) {
+                progress.printf("size %d: %d shapes, %d defective"
+                                + " regions%n", size, shapes.size(),
+                                entries.size() - recorded);
+            }
+            if (size < maxSize) {
+                shapes = grow(shapes);
+            }
+        }
+        Collections.sort(entries, (a, b) -> {
+            int cmp = Long.compareUnsigned(a[0], b[0]);
+            return cmp != 0 ? cmp : Long.compareUnsigned(a[1], b[1]);
+        });
+        Path tmp = Paths.get(file + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(
+                 new BufferedOutputStream(new FileOutputStream(
+                     tmp.toFile())))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(maxSize);
+            out.writeInt(entries.size());
+            for (long[] entry : entries) {
+                out.writeLong(entry[0]);
+                out.writeLong(entry[1]);
+                out.writeByte((int) entry[2]);
+            }
+        }
+        Files.move(tmp, Paths.get(file),
+                   java.nio.file.StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /** Return the canonical shapes formed by adding one square to one of
+     *  SHAPES. */
+    private static Set<Long> grow(Set<Long> shapes) {
+        Set<Long> result = new HashSet<>();
+        int[] cols = new int[Long.SIZE], rows = new int[Long.SIZE];
+        boolean[] queens = new boolean[Long.SIZE];
+        long[] key = new long[2];
+        for (long shape : shapes) {
+            int n = unpack(shape, cols, rows);
+            for (int k = 0; k < n; k += 1) {
+                for (int dir = 0; dir < SYMMETRIES; dir += 1) {
+                    Square step = Square.sq(1, 1).queenMove(dir, 1);
+                    cols[n] = cols[k] + step.col() - 1;
+                    rows[n] = rows[k] + step.row() - 1;
+                    if (!occupied(shape, cols[n], rows[n])
+                        && canonical(n + 1, cols, rows, queens, key)) {
+                        result.add(key[0]);
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /** Add to ENTRIES, as {shape, queens, moves}, each defective region
+     *  with the canonical SHAPE and one to four queens, solved exactly
+     *  with SOLVER. */
+    private static void solveShape(long shape, RegionSolver solver,
+                                   List<long[]> entries) {
+        int[] cols = new int[Long.SIZE], rows = new int[Long.SIZE];
+        boolean[] queens = new boolean[Long.SIZE];
+        long[] key = new long[2];
+        int n = unpack(shape, cols, rows);
+        Board board = new Board();
+        for (int i = 0; i < DistanceMap.SQUARES; i += 1) {
+            board.put(SPEAR, Square.sq(i));
+        }
+        Set<Long> seen = new HashSet<>();
+        for (int subset = 1; subset < 1 << n; subset += 1) {
+            if (Integer.bitCount(subset) > MAX_QUEENS) {
+                continue;
+            }
+            for (int k = 0; k < n; k += 1) {
+                queens[k] = (subset & (1 << k)) != 0;
+            }
+            canonical(n, cols, rows, queens, key);
+            if (!seen.add(key[1])) {
+                continue;
+            }
+            for (int k = 0; k < n; k += 1) {
+                board.put(queens[k] ? WHITE : EMPTY,
+                          Square.sq(cols[k] + 1, rows[k] + 1));
+            }
+            Region region = board.regions().get(0);
+            int moves = solver.solveExactly(board, region,
+                                            Integer.MAX_VALUE);
+            if (moves < region.empties()) {
+                entries.add(new long[] { key[0], key[1], moves });
+            }
+        }
+    }
+
+    /** Set COLS and ROWS to the coordinates of the squares of SHAPE, a set
+     *  of squares in the frame, and return their number. */
+    private static int unpack(long shape, int[] cols, int[] rows) {
+        int n = 0;
+        for (int b = 0; b < FRAME * FRAME; b += 1) {
+            if ((shape & (1L << b)) != 0) {
+                cols[n] = b % FRAME;
+                rows[n] = b / FRAME;
+                n += 1;
+            }
+        }
+        return n;
+    }
+
+    /** Return true iff (COL, ROW) is in the frame and in SHAPE. */
+    private static boolean occupied(long shape, int col, int row) {
+        return col >= 0 && row >= 0 && col < FRAME && row < FRAME
+            && (shape & (1L << (row * FRAME + col))) != 0;
+    }
+
+    /** The tablebase returned by standard(), once opened. */
+    private static RegionTablebase _standard;
+
+    /** The mapped file, or null if I am empty. */
+    private final ByteBuffer _entries;
+    /** The number of entries in _entries. */
+    private final int _count;
+    /** The largest region covered. */
+    private final int _maxSize;
+}
@@ -0,0 +1,41 @@
+package amazons;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+/** JUnit tests of RegionTablebase.
+ *  @author Ethan Yim
+ */
+public class RegionTablebaseTest {
+
+    /** Tests that a generated tablebase agrees with the solver on small
+     *  random regions, wherever they lie and however they are turned. */
+    @Test
+    public void testRegionTablebase() throws IOException {
+        File file = File.createTempFile("regions", ".tb");
+        file.deleteOnExit();
+        RegionTablebase.generate(TABLEBASE_SIZE, file.getPath(), null);
+        RegionTablebase tablebase = RegionTablebase.open(file.getPath());
+        assertEquals(TABLEBASE_SIZE, tablebase.maxSize());
+        assertTrue(tablebase.size() > 0);
+        Random random = new Random(UnitTest.RANDOM_SEED);
+        RegionSolver solver = new RegionSolver();
+        for (int trial = 0; trial < 200; trial += 1) {
+            int size = 2 + random.nextInt(TABLEBASE_SIZE - 1);
+            int queens = 1 + random.nextInt(Math.min(size, 3));
+            Board b = UnitTest.sealedRegion(random, size, queens);
+            Region region = b.regions().get(0);
+            assertEquals(solver.movesLeft(b, region),
+                         tablebase.movesLeft(b, region));
+        }
+        Board big = UnitTest.sealedRegion(random, TABLEBASE_SIZE + 1, 1);
+        assertEquals(-1, tablebase.movesLeft(big, big.regions().get(0)));
+    }
+
+    /** Largest region in the tablebase generated for testing. */
+    static final int TABLEBASE_SIZE = 6;
+}
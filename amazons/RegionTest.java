@@ -0,0 +1,74 @@
+package amazons;
+
+import org.junit.Test;
+
+import static amazons.Piece.*;
+import static org.junit.Assert.*;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/** JUnit tests of the division of a Board into Regions.
+ *  @author Ethan Yim
+ */
+public class RegionTest {
+
+    /** Tests that a wall of spears splits the board into regions, and that
+     *  the regions are classified by the queens in them. */
+    @Test
+    public void testRegions() {
+        Board b = new Board();
+        assertEquals(1, b.regions().size());
+        assertTrue(b.regions().get(0).contested());
+        assertEquals(92, b.regions().get(0).empties());
+        for (int col = 0; col < Board.SIZE; col += 1) {
+            b.put(SPEAR, Square.sq(col, 4));
+        }
+        b.put(EMPTY, Square.sq("a7"));
+        b.put(BLACK, Square.sq("a3"));
+        List<Region> regions = b.regions();
+        assertEquals(2, regions.size());
+        Region south = regions.get(0), north = regions.get(1);
+        assertTrue(south.contested());
+        assertEquals(1, south.queens(BLACK));
+        assertEquals(BLACK, north.owner());
+        assertEquals(47, north.empties());
+        assertTrue(north.contains(Square.sq("j10")));
+        assertFalse(north.contains(Square.sq("a5")));
+    }
+
+    /** Tests that the regions kept up to date by makeMove agree with
+     *  regions computed from scratch along random games. */
+    @Test
+    public void testIncrementalRegions() {
+        Random random = new Random(UnitTest.RANDOM_SEED);
+        for (int game = 0; game < 4; game += 1) {
+            Board b = new Board();
+            b.regions();
+            while (true) {
+                Board fresh = new Board(b);
+                fresh.put(fresh.get(0, 0), Square.sq(0, 0));
+                assertEquals(describe(fresh.regions()),
+                             describe(b.regions()));
+                List<Move> moves = new ArrayList<>();
+                b.legalMoves().forEachRemaining(moves::add);
+                if (moves.isEmpty()) {
+                    break;
+                }
+                b.makeMove(moves.get(random.nextInt(moves.size())));
+            }
+        }
+    }
+
+    /** Return the set of REGIONS, each described by its squares and
+     *  owner. */
+    private Set<String> describe(List<Region> regions) {
+        Set<String> result = new HashSet<>();
+        for (Region region : regions) {
+            result.add(region + " " + region.owner());
+        }
+        return result;
+    }
+}
@@ -0,0 +1,189 @@
+package amazons;
+
+import java.lang.management.ManagementFactory;
+
+/** Counts of the work done by an AI in choosing its last move.  Each AI
+ *  has its own, and so each searching thread counts in its own plain
+ *  fields, which is cheap enough to leave on all the time.  The counts
+ *  are reset at the start of each move.
+ *  @author Ethan Yim
+ */
+final class SearchStats {
+
+    /** Nanoseconds per second. */
+    private static final double NANOS = 1e9;
+    /** Nanoseconds per millisecond. */
+    private static final double NANOS_PER_MILLI = 1e6;
+    /** Source of the bytes allocated by the current thread, or null if
+     *  the JVM cannot count them. */
+    private static final com.sun.management.ThreadMXBean THREADS =
+        threadBean();
+
+    /** How the last move was chosen. */
+    enum Source {
+        /** No move has been chosen yet. */
+        NONE,
+        /** Taken from the opening book. */
+        BOOK,
+        /** Taken from the position database. */
+        POSITIONS,
+        /** Found by the proof search to win. */
+        PROOF,
+        /** Chosen to fill sealed regions once no region is contested. */
+        FILL,
+        /** Found by the alpha-beta search. */
+        SEARCH
+    }
+
+    /** Start counting for a new move, for which the count of cache hits
+     *  starts at CACHEHITS: clear all counts and start the clock. */
+    void start(long cacheHits) {
+        _source = Source.NONE;
+        _nodes = _leaves = _cutoffs = _firstMoveCutoffs = 0;
+        _cacheHits = cacheHits;
+        _depth = _score = 0;
+        _allocated = allocatedBytes();
+        _start = System.nanoTime();
+        _nanos = 0;
+    }
+
+    /** Stop the clock for a move chosen by SOURCE, having searched to
+     *  DEPTH with a value of SCORE (from White's point of view, and
+     *  meaningful only for a search), when the count of cache hits has
+     *  reached CACHEHITS. */
+    void finish(Source source, int depth, int score, long cacheHits) {
+        _source = source;
+        _depth = depth;
+        _score = score;
+        _cacheHits = cacheHits - _cacheHits;
+        _nanos = System.nanoTime() - _start;
+        long allocated = allocatedBytes();
+        _allocated = allocated < 0 ? -1 : allocated - _allocated;
+    }
+
+    /** Count a node visited by the search. */
+    void countNode() {
+        _nodes += 1;
+    }
+
+    /** Count a node whose value was the static evaluation. */
+    void countLeaf() {
+        _leaves += 1;
+    }
+
+    /** Count a beta cutoff, after trying MOVESTRIED moves at the node. */
+    void countCutoff(int movesTried) {
+        _cutoffs += 1;
+        if (movesTried == 1) {
+            _firstMoveCutoffs += 1;
+        }
+    }
+
+    /** Return how the last move was chosen. */
+    Source source() {
+        return _source;
+    }
+
+    /** Return the depth of the last search. */
+    int depth() {
+        return _depth;
+    }
+
+    /** Return the number of nodes visited. */
+    long nodes() {
+        return _nodes;
+    }
+
+    /** Return the number of static evaluations. */
+    long leaves() {
+        return _leaves;
+    }
+
+    /** Return the number of beta cutoffs. */
+    long cutoffs() {
+        return _cutoffs;
+    }
+
+    /** Return the number of beta cutoffs made by the first move tried. */
+    long firstMoveCutoffs() {
+        return _firstMoveCutoffs;
+    }
+
+    /** Return the number of region lookups answered from a table or a
+     *  cache. */
+    long cacheHits() {
+        return _cacheHits;
+    }
+
+    /** Return the value found by the last search, from White's point of
+     *  view. */
+    int score() {
+        return _score;
+    }
+
+    /** Return the time taken by the last move, in nanoseconds. */
+    long nanos() {
+        return _nanos;
+    }
+
+    /** Return the number of bytes allocated on the heap by the thread
+     *  choosing the last move while choosing it, or -1 if the JVM cannot
+     *  tell. */
+    long allocated() {
+        return _allocated;
+    }
+
+    /** Return the number of nodes visited per second. */
+    double nodesPerSecond() {
+        return _nanos == 0 ? 0 : _nodes * NANOS / _nanos;
+    }
+
+    /** Return the number of bytes the current thread has allocated on the
+     *  heap, or -1 if the JVM cannot tell. */
+    private static long allocatedBytes() {
+        return THREADS == null ? -1 : THREADS.getCurrentThreadAllocatedBytes();
+    }
+
+    /** Return the JVM's counter of bytes allocated by each thread, or
+     *  null if it has none. */
+    private static com.sun.management.ThreadMXBean threadBean() {
+        java.lang.management.ThreadMXBean bean =
+            ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+            return null;
+        }
+        com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) bean;
+        return threads.isThreadAllocatedMemorySupported() ? threads : null;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s depth %d, %d nodes, %d leaves, %d cutoffs"
+                             + " (%.0f%% first move), %d cache hits,"
+                             + " %.1f ms, %.0f nodes/sec",
+                             _source.toString().toLowerCase(), _depth,
+                             _nodes, _leaves, _cutoffs,
+                             _cutoffs == 0 ? 0
+                             : 100.0 * _firstMoveCutoffs / _cutoffs,
+                             _cacheHits, _nanos / NANOS_PER_MILLI,
+                             nodesPerSecond());
+    }
+
+    /** How the last move was chosen. */
+    private Source _source = Source.NONE;
+    /** The depth of the last search. */
+    private int _depth;
+    /** The counts for the last move.  Until it is finished, _cacheHits
+     *  is the count of cache hits when it started. */
+    private long _nodes, _leaves, _cutoffs, _firstMoveCutoffs, _cacheHits;
+    /** The value found by the last search. */
+    private int _score;
+    /** When the last move was started, and how long it took, in
+     *  nanoseconds. */
+    private long _start, _nanos;
+    /** The bytes allocated for the last move, or -1 if unknown.  Until
+     *  the move is finished, the bytes allocated by the thread when it
+     *  started. */
+    private long _allocated;
+}
@@ -0,0 +1,42 @@
+package amazons;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+import java.util.List;
+import java.util.Random;
+
+/** JUnit tests of SearchStats.
+ *  @author Ethan Yim
+ */
+public class SearchStatsTest {
+
+    /** Tests that the AI counts the work of its search, afresh for each
+     *  move. */
+    @Test
+    public void testSearchStats() {
+        Controller controller =
+            new Controller(new NullView(), null, new NullReporter(),
+                           new AI(), new AI());
+        Board b = new Board();
+        List<Move> game = UnitTest.randomGame(new Random(UnitTest.RANDOM_SEED));
+        for (Move move : game.subList(0, game.size() / 2)) {
+            b.makeMove(move);
+        }
+        AI ai = (AI) new AI().create(b.turn(), controller);
+        ai.searchMove(b, 2);
+        SearchStats stats = ai.stats();
+        assertEquals(SearchStats.Source.SEARCH, stats.source());
+        assertEquals(2, stats.depth());
+        assertTrue(stats.leaves() > 0 && stats.leaves() < stats.nodes());
+        assertTrue(stats.firstMoveCutoffs() <= stats.cutoffs());
+        assertTrue(stats.cutoffs() < stats.nodes());
+        assertTrue(stats.nanos() > 0 && stats.nodesPerSecond() > 0);
+        long nodes = stats.nodes();
+        ai.searchMove(b, 1);
+        assertEquals(1, stats.depth());
+        assertEquals(stats.nodes() - 1, stats.leaves());
+        assertTrue(stats.nodes() < nodes);
+        assertNull(new TextPlayer().stats());
+    }
+}
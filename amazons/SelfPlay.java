@@ -0,0 +1,259 @@
+package amazons;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static amazons.Piece.*;
+
+/** Plays many games between automated players in one JVM, for regression
+ *  testing and to generate games.
+ *
+ *  Each game is played by its own Controller, with a NullView and a
+ *  NullReporter, from an opening of a few random moves (see
+ *  Match.opening), and games are played in parallel.  The results are
+ *  summarized: how often each side wins, how long games last, and how
+ *  long moves take to choose.  Optionally, the games are also written to
+ *  a log in the form written by Main's --log option, each game starting
+ *  with "new", which OpeningBook.Builder.addLog reads, and to a
+ *  GameArchive, with their seeds and results.
+ *  @author Ethan Yim
+ */
+class SelfPlay {
+
+    /** Games between reports of progress. */
+    static final int PROGRESS_INTERVAL = 100;
+    /** Nanoseconds per second. */
+    private static final double NANOS = 1e9;
+    /** Nanoseconds per millisecond. */
+    private static final double NANOS_PER_MILLI = 1e6;
+    /** The fractions of moves whose times are reported as percentiles. */
+    private static final double[] PERCENTILES = { 0.5, 0.9, 0.99 };
+
+    /** Self-play between players made from WHITE (playing white) and
+     *  BLACK, playing THREADS games at once, from openings of PLIES
+     *  random moves. */
+    SelfPlay(Player white, Player black, int threads, int plies) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("need at least one thread");
+        }
+        _white = white;
+        _black = black;
+        _threads = threads;
+        _plies = plies;
+    }
+
+    /** Write each game played to LOG, or to nowhere if LOG is null. */
+    void setLog(PrintStream log) {
+        _log = log;
+    }
+
+    /** Add each game played to ARCHIVE, or to none if ARCHIVE is
+     *  null. */
+    void setArchive(GameArchive.Writer archive) {
+        _archive = archive;
+    }
+
+    /** Play GAMES games, with openings and controllers seeded from SEED,
+     *  reporting progress on OUT, and return a summary of them. */
+    Summary play(int games, long seed, PrintStream out) {
+        ExecutorService threads = Executors.newFixedThreadPool(_threads);
+        CompletionService<Controller> results =
+            new ExecutorCompletionService<>(threads);
+        Map<Future<Controller>, Long> seeds = new HashMap<>();
+        long start = System.nanoTime();
+        try {
+            for (int g = 0; g < games; g += 1) {
+                long gameSeed = seed + g;
+                seeds.put(results.submit(() -> game(gameSeed)), gameSeed);
+            }
+            Summary summary = new Summary();
+            for (int g = 1; g <= games; g += 1) {
+                Future<Controller> done = results.take();
+                Controller game = done.get();
+                Board board = game.board();
+                summary.add(board.turn().opponent(), board.numMoves(),
+                            game.moveTimes());
+                if (_log != null) {
+                    _log.println("new");
+                    for (Move move : board.moves()) {
+                        _log.println(move);
+                    }
+                    _log.flush();
+                }
+                if (_archive != null) {
+                    _archive.add(board.moves(), board.turn().opponent(),
+                                 seeds.get(done),
+                                 _white.getClass().getSimpleName(),
+                                 _black.getClass().getSimpleName());
+                }
+                if (g % PROGRESS_INTERVAL == 0 && g < games) {
+                    out.printf("%d games, %.1f games/sec%n", g,
+                               g * NANOS / (System.nanoTime() - start));
+                }
+            }
+            summary.report(out, (System.nanoTime() - start) / NANOS);
+            return summary;
+        } catch (InterruptedException excp) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("self-play interrupted");
+        } catch (IOException excp) {
+            throw new IllegalStateException("could not write archive: "
+                                            + excp.getMessage());
+        } catch (ExecutionException excp) {
+            throw new IllegalStateException("self-play failed",
+                                            excp.getCause());
+        } finally {
+            threads.shutdownNow();
+        }
+    }
+
+    /** Play the game whose opening and controller are seeded from SEED,
+     *  and return its Controller. */
+    private Controller game(long seed) {
+        Controller result =
+            new Controller(new NullView(), null, new NullReporter(),
+                           _white, _black);
+        result.setSeed(seed);
+        result.playGame(Match.opening(_plies, new Random(seed)),
+                        _white, _black);
+        return result;
+    }
+
+    /** Statistics of a set of finished games. */
+    static final class Summary {
+
+        /** Record a game won by WINNER after LENGTH moves in all, in
+         *  which the players took MOVETIMES nanoseconds to choose their
+         *  moves. */
+        void add(Piece winner, int length, long[] moveTimes) {
+            _games += 1;
+            if (winner == WHITE) {
+                _whiteWins += 1;
+            }
+            _totalLength += length;
+            _minLength = Math.min(_minLength, length);
+            _maxLength = Math.max(_maxLength, length);
+            int needed = _moves + moveTimes.length;
+            if (needed > _times.length) {
+                _times = Arrays.copyOf(_times,
+                                       Math.max(2 * _times.length, needed));
+            }
+            System.arraycopy(moveTimes, 0, _times, _moves, moveTimes.length);
+            _moves += moveTimes.length;
+            _sorted = false;
+        }
+
+        /** Return the number of games. */
+        int games() {
+            return _games;
+        }
+
+        /** Return the number of games won by SIDE. */
+        int wins(Piece side) {
+            return side == WHITE ? _whiteWins : _games - _whiteWins;
+        }
+
+        /** Return the mean number of moves per game. */
+        double meanLength() {
+            return (double) _totalLength / _games;
+        }
+
+        /** Return the fewest moves in a game. */
+        int minLength() {
+            return _minLength;
+        }
+
+        /** Return the most moves in a game. */
+        int maxLength() {
+            return _maxLength;
+        }
+
+        /** Return the number of moves timed. */
+        int moves() {
+            return _moves;
+        }
+
+        /** Return the time, in nanoseconds, within which the fraction
+         *  FRACTION of moves were chosen. */
+        long moveTime(double fraction) {
+            if (!_sorted) {
+                Arrays.sort(_times, 0, _moves);
+                _sorted = true;
+            }
+            int k = (int) Math.ceil(fraction * _moves) - 1;
+            return _times[Math.max(0, Math.min(k, _moves - 1))];
+        }
+
+        /** Return the mean time, in nanoseconds, taken to choose a
+         *  move. */
+        double meanMoveTime() {
+            long total = 0;
+            for (int k = 0; k < _moves; k += 1) {
+                total += _times[k];
+            }
+            return (double) total / _moves;
+        }
+
+        /** Print the summary on OUT, for games that took SECS seconds to
+         *  play. */
+        void report(PrintStream out, double secs) {
+            out.printf("%d games in %.1f s (%.1f games/sec)%n", _games, secs,
+                       _games / secs);
+            if (_games == 0) {
+                return;
+            }
+            for (Piece side : new Piece[] { WHITE, BLACK }) {
+                out.printf("%s wins: %d (%.1f%%)%n", side.toName(),
+                           wins(side), 100.0 * wins(side) / _games);
+            }
+            out.printf("moves per game: mean %.1f, min %d, max %d%n",
+                       meanLength(), _minLength, _maxLength);
+            if (_moves == 0) {
+                return;
+            }
+            out.printf("move time: mean %.1f ms",
+                       meanMoveTime() / NANOS_PER_MILLI);
+            for (double fraction : PERCENTILES) {
+                out.printf(", %.0f%% %.1f ms", 100 * fraction,
+                           moveTime(fraction) / NANOS_PER_MILLI);
+            }
+            out.printf(", max %.1f ms%n", moveTime(1) / NANOS_PER_MILLI);
+        }
+
+        /** Number of games. */
+        private int _games;
+        /** Number of games won by white. */
+        private int _whiteWins;
+        /** Total number of moves in the games. */
+        private long _totalLength;
+        /** Fewest and most moves in a game. */
+        private int _minLength = Integer.MAX_VALUE, _maxLength;
+        /** _times[0 .. _moves-1] are the times taken by the moves. */
+        private long[] _times = new long[Board.SIZE * Board.SIZE];
+        /** Number of moves timed. */
+        private int _moves;
+        /** True iff _times is in increasing order. */
+        private boolean _sorted;
+    }
+
+    /** Templates for the players of white and black. */
+    private final Player _white, _black;
+    /** Number of games played at once. */
+    private final int _threads;
+    /** Random moves in each opening. */
+    private final int _plies;
+    /** Where games are written, or null. */
+    private PrintStream _log;
+    /** Where games are archived, or null. */
+    private GameArchive.Writer _archive;
+}
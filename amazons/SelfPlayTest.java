@@ -0,0 +1,55 @@
+package amazons;
+
+import org.junit.Test;
+
+import static amazons.Piece.*;
+import static org.junit.Assert.*;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+
+/** JUnit tests of SelfPlay.
+ *  @author Ethan Yim
+ */
+public class SelfPlayTest {
+
+    /** Tests that self-play summarizes its games correctly and logs them
+     *  in a form the opening book builder reads back. */
+    @Test
+    public void testSelfPlay() throws IOException {
+        SelfPlay.Summary summary = new SelfPlay.Summary();
+        summary.add(WHITE, 70, new long[] { 4, 1, 3 });
+        summary.add(BLACK, 80, new long[] { 2 });
+        assertEquals(1, summary.wins(WHITE));
+        assertEquals(1, summary.wins(BLACK));
+        assertEquals(75, summary.meanLength(), 1e-9);
+        assertEquals(70, summary.minLength());
+        assertEquals(80, summary.maxLength());
+        assertEquals(2.5, summary.meanMoveTime(), 1e-9);
+        assertEquals(2, summary.moveTime(0.5));
+        assertEquals(4, summary.moveTime(1));
+
+        Player quick =
+            Match.player("mcts:" + UnitTest.MATCH_TEST_TIME + ":4:1");
+        SelfPlay selfPlay = new SelfPlay(quick, quick, 2,
+                                         Match.DEFAULT_OPENING_PLIES);
+        File log = File.createTempFile("selfplay", ".log");
+        log.deleteOnExit();
+        SelfPlay.Summary result;
+        try (PrintStream out = new PrintStream(log)) {
+            selfPlay.setLog(out);
+            result = selfPlay.play(3, UnitTest.RANDOM_SEED,
+                                   new PrintStream(
+                                       OutputStream.nullOutputStream()));
+        }
+        assertEquals(3, result.games());
+        assertEquals(3, result.wins(WHITE) + result.wins(BLACK));
+        assertEquals(result.meanLength() * 3
+                     - 3 * Match.DEFAULT_OPENING_PLIES,
+                     result.moves(), 1e-9);
+        OpeningBook.Builder builder =
+            new OpeningBook.Builder(UnitTest.BOOK_PLIES);
+        assertEquals(3, builder.addLog(log.getPath()));
+    }
+}
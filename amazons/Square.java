@@ -148,6 +148,25 @@ final class Square {
         }
     }
 
+    /** Return my image under symmetry SYM of the board, where
+     *  0 <= SYM < SYMMETRIES.  Bit 2 of SYM transposes the board, and
+     *  bits 0 and 1 then reflect its columns and its rows.  Symmetry 0 is
+     *  the identity. */
+    Square transform(int sym) {
+        return SQUARES[TRANSFORMS[sym][_index]];
+    }
+
+    /** Return the index of the image of the square with index INDEX
+     *  under symmetry SYM, as for transform. */
+    static int transform(int sym, int index) {
+        return TRANSFORMS[sym][index];
+    }
+
+    /** Return the symmetry that undoes symmetry SYM. */
+    static int inverse(int sym) {
+        return INVERSES[sym];
+    }
+
     @Override
     public String toString() {
         return _str;
@@ -182,11 +201,12 @@ final class Square {
     /** Return the (unique) Square denoting the position in POSN, in the
      *  standard text format for a square (e.g. a4). POSN must be a
      *  valid square designation. */
-    static Square sq(String posn) {
-        assert posn.matches(SQ);
-        int c = posn.charAt(0) - ASCII_LOWER_A;
-        int r = Integer.parseInt(posn.substring(1)) - 1;
-        return sq(c, r);
+    static Square sq(CharSequence posn) {
+        int index = Notation.squareIndex(posn, 0, posn.length());
+        if (index < 0) {
+            throw error("not a square: %s", posn);
+        }
+        return SQUARES[index];
     }
 
     /** Return an iterator over all Squares. */
@@ -211,10 +231,48 @@ final class Square {
     /** SQUARES viewed as a List. */
     private static final List<Square> SQUARE_LIST = Arrays.asList(SQUARES);
 
+    /** The number of symmetries of the board. */
+    static final int SYMMETRIES = 8;
+
+    /** TRANSFORMS[s][i] is the index of the image of the square with
+     *  index i under symmetry s. */
+    private static final int[][] TRANSFORMS =
+        new int[SYMMETRIES][Board.SIZE * Board.SIZE];
+
+    /** INVERSES[s] is the symmetry that undoes symmetry s. */
+    private static final int[] INVERSES = new int[SYMMETRIES];
+
     static {
         for (int i = Board.SIZE * Board.SIZE - 1; i >= 0; i -= 1) {
             SQUARES[i] = new Square(i);
         }
+        int last = Board.SIZE - 1;
+        for (int sym = 0; sym < SYMMETRIES; sym += 1) {
+            for (int i = 0; i < Board.SIZE * Board.SIZE; i += 1) {
+                int col = i % Board.SIZE, row = i / Board.SIZE;
+                if ((sym & 4) != 0) {
+                    int t = col;
+                    col = row;
+                    row = t;
+                }
+                if ((sym & 1) != 0) {
+                    col = last - col;
+                }
+                if ((sym & 2) != 0) {
+                    row = last - row;
+                }
+                TRANSFORMS[sym][i] = row * Board.SIZE + col;
+            }
+        }
+        for (int sym = 0; sym < SYMMETRIES; sym += 1) {
+            for (int inv = 0; inv < SYMMETRIES; inv += 1) {
+                if (TRANSFORMS[inv][TRANSFORMS[sym][1]] == 1
+                    && TRANSFORMS[inv][TRANSFORMS[sym][Board.SIZE]]
+                       == Board.SIZE) {
+                    INVERSES[sym] = inv;
+                }
+            }
+        }
     }
 
     /** My index position. */
@@ -0,0 +1,159 @@
+package amazons;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/** A log of the AI's moves in JSON Lines form: one JSON object per move,
+ *  giving the side, the move, the ply, how the move was chosen, the time
+ *  spent, the depth reached, the nodes visited and nodes per second, the
+ *  score, the number of legal moves and the bytes allocated.
+ *
+ *  Lines are formatted by the searching thread but written by a daemon
+ *  thread of the log's own, through a buffer that is flushed whenever
+ *  the writer catches up.  Recording a move never waits: if the writer
+ *  falls QUEUE_SIZE lines behind, further lines are dropped (and
+ *  counted) until it catches up.
+ *  @author Ethan Yim
+ */
+class Telemetry {
+
+    /** System property naming the file written by standard(). */
+    static final String FILE_PROPERTY = "amazons.telemetry";
+    /** Lines that may wait to be written. */
+    static final int QUEUE_SIZE = 4096;
+    /** Nanoseconds per millisecond. */
+    private static final double NANOS_PER_MILLI = 1e6;
+
+    /** A log writing to OUT, which it closes when it is closed. */
+    Telemetry(Writer out) {
+        _out = new BufferedWriter(out);
+        _writer = new Thread(this::drain, "telemetry");
+        _writer.setDaemon(true);
+        _writer.start();
+    }
+
+    /** Return a log writing to FILE, which is replaced. */
+    static Telemetry open(String file) throws IOException {
+        return new Telemetry(Files.newBufferedWriter(Paths.get(file)));
+    }
+
+    /** Return the log named by the amazons.telemetry property, opened the
+     *  first time it is asked for and closed when the JVM exits, or null
+     *  if the property is not set or the file cannot be written. */
+    static Telemetry standard() {
+        synchronized (Telemetry.class) {
+            String file = System.getProperty(FILE_PROPERTY);
+            if (_standard == null && file != null && !_standardFailed) {
+                try {
+                    Telemetry telemetry = open(file);
+                    Runtime.getRuntime().addShutdownHook(
+                        new Thread(telemetry::close));
+                    _standard = telemetry;
+                } catch (IOException excp) {
+                    System.err.printf("Not writing telemetry to %s: %s%n",
+                                      file, excp.getMessage());
+                    _standardFailed = true;
+                }
+            }
+            return _standard;
+        }
+    }
+
+    /** Record that SIDE chose MOVE as ply number PLY (counting from 1),
+     *  from a position with LEGALMOVES legal moves, with the search
+     *  described by STATS. */
+    void recordMove(Piece side, Move move, int ply, long legalMoves,
+                    SearchStats stats) {
+        record(String.format(
+            Locale.ROOT,
+            "{\"side\":\"%s\",\"move\":\"%s\",\"ply\":%d,\"source\":\"%s\","
+            + "\"ms\":%.3f,\"depth\":%d,\"nodes\":%d,\"nps\":%.0f,"
+            + "\"score\":%d,\"legal\":%d,\"allocated\":%d}",
+            side.toName().toLowerCase(), move, ply,
+            stats.source().toString().toLowerCase(),
+            stats.nanos() / NANOS_PER_MILLI, stats.depth(), stats.nodes(),
+            stats.nodesPerSecond(), stats.score(), legalMoves,
+            stats.allocated()));
+    }
+
+    /** Queue LINE, a complete JSON object, to be written, unless the
+     *  queue is full or I am closed, in which case it is dropped. */
+    void record(String line) {
+        if (_closed || !_queue.offer(line)) {
+            _dropped.incrementAndGet();
+        }
+    }
+
+    /** Return the number of lines dropped. */
+    long dropped() {
+        return _dropped.get();
+    }
+
+    /** Write all the lines queued so far, and then stop writing and close
+     *  my output.  Later lines are dropped. */
+    void close() {
+        synchronized (this) {
+            if (_closed) {
+                return;
+            }
+            _closed = true;
+        }
+        try {
+            _queue.put(END);
+            _writer.join();
+        } catch (InterruptedException excp) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** Write queued lines until the end marker, flushing whenever the
+     *  queue is empty, and then close the output. */
+    private void drain() {
+        try (Writer out = _out) {
+            while (true) {
+                String line = _queue.take();
+                if (line == END) {
+                    break;
+                }
+                out.write(line);
+                out.write('\n');
+                if (_queue.isEmpty()) {
+                    out.flush();
+                }
+            }
+        } catch (IOException excp) {
+            System.err.printf("Telemetry stopped: %s%n", excp.getMessage());
+            _closed = true;
+            _queue.clear();
+        } catch (InterruptedException excp) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** Marks the end of the lines to write (compared by identity). */
+    private static final String END = new String("");
+
+    /** The log named by FILE_PROPERTY, or null if not yet opened. */
+    private static Telemetry _standard;
+    /** True iff the log named by FILE_PROPERTY could not be opened. */
+    private static boolean _standardFailed;
+
+    /** Lines waiting to be written. */
+    private final BlockingQueue<String> _queue =
+        new ArrayBlockingQueue<>(QUEUE_SIZE);
+    /** Where lines are written. */
+    private final BufferedWriter _out;
+    /** The thread writing lines. */
+    private final Thread _writer;
+    /** Number of lines dropped. */
+    private final AtomicLong _dropped = new AtomicLong();
+    /** True once I am closed or my output has failed. */
+    private volatile boolean _closed;
+}
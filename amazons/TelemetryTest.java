@@ -0,0 +1,40 @@
+package amazons;
+
+import org.junit.Test;
+
+import static amazons.Piece.*;
+import static org.junit.Assert.*;
+import java.io.StringWriter;
+
+/** JUnit tests of Telemetry.
+ *  @author Ethan Yim
+ */
+public class TelemetryTest {
+
+    /** Tests that the telemetry log writes one JSON object per move, in
+     *  order, and drops lines once closed. */
+    @Test
+    public void testTelemetry() {
+        Controller controller =
+            new Controller(new NullView(), null, new NullReporter(),
+                           new AI(), new AI());
+        Board b = new Board();
+        AI ai = (AI) new AI().create(WHITE, controller);
+        Move move = ai.searchMove(b, 1);
+        StringWriter out = new StringWriter();
+        Telemetry telemetry = new Telemetry(out);
+        telemetry.recordMove(WHITE, move, 1, 2176, ai.stats());
+        telemetry.record("{}");
+        telemetry.close();
+        telemetry.record("{}");
+        assertEquals(1, telemetry.dropped());
+        String[] lines = out.toString().split("\n");
+        assertEquals(2, lines.length);
+        assertTrue(lines[0].startsWith("{\"side\":\"white\",\"move\":\""
+                                       + move + "\",\"ply\":1,"));
+        assertTrue(lines[0].contains("\"depth\":1,"));
+        assertTrue(lines[0].contains("\"legal\":2176,"));
+        assertTrue(lines[0].endsWith("}"));
+        assertEquals("{}", lines[1]);
+    }
+}
@@ -5,7 +5,14 @@ import org.junit.Test;
 import static amazons.Piece.*;
 import static org.junit.Assert.*;
 import ucb.junit.textui;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.stream.Collectors;
 
 /** The suite of all JUnit tests for the amazons package.
  *  @author Ethan Yim
@@ -15,7 +22,16 @@ public class UnitTest {
     /** Run the JUnit tests in this package. Add xxxTest.class entries to
      *  the arguments of runClasses to run other JUnit tests. */
     public static void main(String[] ignored) {
-        textui.runClasses(UnitTest.class);
+        textui.runClasses(UnitTest.class, DistanceMapTest.class,
+                          RegionTest.class, RegionSolverTest.class,
+                          RegionTablebaseTest.class, ProofSearchTest.class,
+                          MCTSPlayerTest.class, PlayoutTest.class,
+                          OpeningBookTest.class, PerftTest.class,
+                          MatchTest.class, SelfPlayTest.class,
+                          SearchStatsTest.class, TelemetryTest.class,
+                          EngineEventsTest.class, GameArchiveTest.class,
+                          NotationTest.class, PositionDatabaseTest.class,
+                          ValidatorTest.class, EvaluatorTest.class);
     }
 
     /** Tests basic correctness of put and get on the initialized board. */
@@ -199,6 +215,263 @@ public class UnitTest {
         assertFalse(r.hasNext());
     }
 
+    /** Tests that Board.hash depends only on the position, and that
+     *  hashAfter and retract agree with it. */
+    @Test
+    public void testHash() {
+        Board b = new Board();
+        long initial = b.hash();
+        Move m1 = Move.mv("d1-d4(d1)"), m2 = Move.mv("g10-g7(g10)"),
+            m3 = Move.mv("g1-g4(g1)");
+        assertEquals(b.hashAfter(m1), afterMove(b, m1).hash());
+        b.makeMove(m1);
+        b.makeMove(m2);
+        b.makeMove(m3);
+        Board other = new Board();
+        other.makeMove(m3);
+        other.makeMove(m2);
+        other.makeMove(m1);
+        assertEquals(b.toString(), other.toString());
+        assertEquals(b.hash(), other.hash());
+        b.retract();
+        assertTrue(b.hash() != other.hash());
+        b.retract();
+        b.retract();
+        assertEquals(initial, b.hash());
+        assertEquals(new Board().hash(), b.hash());
+    }
+
+    /** Tests that move codes identify moves. */
+    @Test
+    public void testMoveCode() {
+        Board b = new Board();
+        Set<Integer> codes = new HashSet<>();
+        for (Iterator<Move> m = b.legalMoves(); m.hasNext(); ) {
+            Move move = m.next();
+            assertTrue(move.code() < 1 << (3 * Move.CODE_BITS));
+            assertSame(move, Move.mv(move.code()));
+            codes.add(move.code());
+        }
+        assertEquals(2176, codes.size());
+        try {
+            Move.mv(Square.sq("a1"), Square.sq("b3"), Square.sq("a1"));
+            fail("knight move accepted");
+        } catch (IllegalArgumentException excp) {
+            /* Expected. */
+        }
+        assertEquals("a4-b5(b4)", Move.mv("a4 b5 b4").toString());
+    }
+
+    /** Tests that threads creating the same moves at once get the same
+     *  Move objects. */
+    @Test
+    public void testMoveInterning() {
+        List<Integer> codes = new ArrayList<>();
+        for (Square from : Utils.iterable(Square.iterator())) {
+            for (Square to : Utils.iterable(Square.iterator())) {
+                for (Square spear : Utils.iterable(Square.iterator())) {
+                    if (from.isQueenMove(to) && to.isQueenMove(spear)
+                        && from.row() == Board.SIZE / 2) {
+                        codes.add((from.index() << (2 * Move.CODE_BITS))
+                                  | (to.index() << Move.CODE_BITS)
+                                  | spear.index());
+                    }
+                }
+            }
+        }
+        List<Move> moves = codes.parallelStream().map(Move::mv)
+            .collect(Collectors.toList());
+        List<Move> again = codes.parallelStream().map(Move::mv)
+            .collect(Collectors.toList());
+        for (int k = 0; k < codes.size(); k += 1) {
+            assertSame(moves.get(k), again.get(k));
+            assertEquals((int) codes.get(k), moves.get(k).code());
+            assertSame(moves.get(k), Move.mv(moves.get(k).toString()));
+        }
+    }
+
+    /** Tests that legalMoveStream gives the moves of legalMoves, in order
+     *  and in parallel, and that its parts know their exact sizes. */
+    @Test
+    public void testLegalMoveStream() {
+        Board b = new Board();
+        List<Move> game = randomGame(new Random(RANDOM_SEED));
+        for (Move move : game.subList(0, game.size() / 2)) {
+            b.makeMove(move);
+        }
+        List<Move> expected = new ArrayList<>();
+        b.legalMoves().forEachRemaining(expected::add);
+        assertEquals(expected,
+                     b.legalMoveStream().collect(Collectors.toList()));
+        assertEquals(expected,
+                     b.legalMoveStream().parallel()
+                     .collect(Collectors.toList()));
+        assertEquals(2176, new Board().legalMoveStream().count());
+
+        Spliterator<Move> whole = b.legalMoveStream().spliterator();
+        assertEquals(expected.size(), whole.estimateSize());
+        List<Spliterator<Move>> parts = new ArrayList<>();
+        parts.add(whole);
+        for (int k = 0; k < parts.size(); k += 1) {
+            Spliterator<Move> part = parts.get(k).trySplit();
+            if (part != null) {
+                parts.add(k, part);
+                k -= 1;
+            }
+        }
+        assertTrue(parts.size() > 1);
+        List<Move> joined = new ArrayList<>();
+        for (Spliterator<Move> part : parts) {
+            long size = part.estimateSize();
+            int before = joined.size();
+            part.forEachRemaining(joined::add);
+            assertEquals(size, joined.size() - before);
+        }
+        assertEquals(expected, joined);
+    }
+
+    /** Tests that the symmetries of the board are permutations with the
+     *  right inverses, that canonical hashes agree for mirror images of a
+     *  position, and that symmetric moves are told apart. */
+    @Test
+    public void testSymmetry() {
+        for (int sym = 0; sym < Square.SYMMETRIES; sym += 1) {
+            Set<Square> images = new HashSet<>();
+            for (int i = 0; i < DistanceMap.SQUARES; i += 1) {
+                Square s = Square.sq(i);
+                images.add(s.transform(sym));
+                assertEquals(s, s.transform(sym)
+                             .transform(Square.inverse(sym)));
+            }
+            assertEquals(DistanceMap.SQUARES, images.size());
+        }
+        Board b = new Board();
+        assertEquals(1 << 1, b.symmetries());
+        int distinct = 0;
+        for (Iterator<Move> m = b.legalMoves(); m.hasNext(); ) {
+            distinct += m.next().leastImage(b.symmetries()) ? 1 : 0;
+        }
+        assertEquals(2176 / 2, distinct);
+
+        Random random = new Random(RANDOM_SEED);
+        List<Move> game = randomGame(random);
+        Board original = new Board();
+        for (Move move : game.subList(0, 20)) {
+            assertEquals(original.canonicalHashAfter(move),
+                         afterMove(original, move).canonicalHash());
+            original.makeMove(move);
+        }
+        assertEquals(0, original.symmetries());
+        for (int sym = 1; sym < Square.SYMMETRIES; sym += 1) {
+            Board image = new Board();
+            for (int i = 0; i < DistanceMap.SQUARES; i += 1) {
+                Square s = Square.sq(i);
+                image.put(original.get(s), s.transform(sym));
+            }
+            assertEquals(original.turn(), image.turn());
+            assertTrue(original.hash() != image.hash());
+            assertEquals(original.canonicalHash(), image.canonicalHash());
+        }
+    }
+
+    /** Tests the parsing of the AI's beam phases. */
+    @Test
+    public void testParseBeam() {
+        int[][] beam = AI.parseBeam("12:16:2, 30:24:3");
+        assertEquals(2, beam.length);
+        assertArrayEquals(new int[] { 12, 16, 2 }, beam[0]);
+        assertArrayEquals(new int[] { 30, 24, 3 }, beam[1]);
+        assertEquals(0, AI.parseBeam("").length);
+        assertEquals(2, AI.parseBeam(AI.DEFAULT_BEAM).length);
+        for (String bad : new String[] { "12:16", "12:x:2", "12:0:2" }) {
+            try {
+                AI.parseBeam(bad);
+                fail("accepted " + bad);
+            } catch (IllegalArgumentException excp) {
+                continue;
+            }
+        }
+    }
+
+    /** Return true iff the side to move on B can force a win, found by
+     *  trying every line. */
+    static boolean wins(Board b) {
+        for (Iterator<Move> m = b.legalMoves(); m.hasNext(); ) {
+            if (!wins(afterMove(b, m.next()))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Return a copy of B after MOVE. */
+    static Board afterMove(Board b, Move move) {
+        Board result = new Board(b);
+        result.makeMove(move);
+        return result;
+    }
+
+    /** Return the first square, in index order, holding a queen on B. */
+    static Square firstQueen(Board b) {
+        for (int i = 0; ; i += 1) {
+            if (b.get(Square.sq(i)) == WHITE) {
+                return Square.sq(i);
+            }
+        }
+    }
+
+    /** Return the moves of a game played to the end with moves chosen
+     *  using RANDOM. */
+    static List<Move> randomGame(Random random) {
+        Board b = new Board();
+        List<Move> result = new ArrayList<>();
+        while (true) {
+            List<Move> moves = new ArrayList<>();
+            b.legalMoves().forEachRemaining(moves::add);
+            if (moves.isEmpty()) {
+                return result;
+            }
+            Move move = moves.get(random.nextInt(moves.size()));
+            b.makeMove(move);
+            result.add(move);
+        }
+    }
+
+    /** Return a board filled with spears except for one region of SIZE
+     *  squares grown at random using RANDOM, with QUEENS white queens in
+     *  it. */
+    static Board sealedRegion(Random random, int size, int queens) {
+        Board b = new Board();
+        for (int i = 0; i < DistanceMap.SQUARES; i += 1) {
+            b.put(SPEAR, Square.sq(i));
+        }
+        List<Square> squares = new ArrayList<>();
+        squares.add(Square.sq(random.nextInt(DistanceMap.SQUARES)));
+        b.put(EMPTY, squares.get(0));
+        while (squares.size() < size) {
+            Square s = squares.get(random.nextInt(squares.size()))
+                .queenMove(random.nextInt(8), 1);
+            if (s != null && b.get(s) == SPEAR) {
+                b.put(EMPTY, s);
+                squares.add(s);
+            }
+        }
+        for (int k = 0; k < queens; k += 1) {
+            b.put(WHITE, squares.get(k));
+        }
+        return b;
+    }
+
+    /** Time allowed per move to the players of the match played for
+     *  testing, in milliseconds. */
+    static final int MATCH_TEST_TIME = 2;
+
+    /** Plies covered by the opening book built for testing. */
+    static final int BOOK_PLIES = 4;
+
+    /** Seed for the random games used in tests. */
+    static final long RANDOM_SEED = 61;
+
     private void makeSmile(Board b) {
         b.put(EMPTY, Square.sq(0, 3));
         b.put(EMPTY, Square.sq(0, 6));
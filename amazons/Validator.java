@@ -0,0 +1,339 @@
+package amazons;
+
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static amazons.Piece.*;
+
+/** Replays recorded games to check them against the rules as Board now
+ *  implements them: that every move is legal and, where a result is
+ *  recorded, that it is the result the moves lead to.
+ *
+ *  Games are read from logs in the form written by Main's --log option
+ *  (commands, one per line, with "new" between games; moves the game
+ *  rejected are reported too), and from GameArchive files, whose
+ *  recorded winners are checked.  The files are read by the calling
+ *  thread and cut into batches of games, which a pool of threads
+ *  replays, each on its own Board.  At most a few batches wait at once,
+ *  so files of any size can be checked.
+ *  @author Ethan Yim
+ */
+class Validator {
+
+    /** Games of an archive replayed by one task. */
+    static final int BATCH_GAMES = 512;
+    /** Lines of a log after which a batch ends at the next "new". */
+    static final int BATCH_LINES = 32768;
+    /** Most problems listed by a report. */
+    static final int MAX_LISTED = 100;
+    /** Nanoseconds per second. */
+    private static final double NANOS = 1e9;
+
+    /** A validator replaying games in THREADS threads. */
+    Validator(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("need at least one thread");
+        }
+        _threads = threads;
+    }
+
+    /** Replay the games in FILES, each a log or a GameArchive, and return
+     *  a report of what was found. */
+    Report validate(List<String> files) throws IOException {
+        ExecutorService threads = Executors.newFixedThreadPool(_threads);
+        CompletionService<Report> results =
+            new ExecutorCompletionService<>(threads);
+        Report total = new Report();
+        long start = System.nanoTime();
+        _pending = 0;
+        try {
+            for (int f = 0; f < files.size(); f += 1) {
+                int file = f;
+                String name = files.get(f);
+                if (isArchive(name)) {
+                    GameArchive archive = GameArchive.open(name);
+                    for (int g = 0; g < archive.size(); g += BATCH_GAMES) {
+                        int first = g,
+                            end = Math.min(g + BATCH_GAMES, archive.size());
+                        submit(results, total, () -> replayArchive(
+                                   file, name, archive, first, end));
+                    }
+                } else {
+                    submitLog(results, total, file, name);
+                }
+            }
+            while (_pending > 0) {
+                total.addAll(results.take().get());
+                _pending -= 1;
+            }
+            total._nanos = System.nanoTime() - start;
+            total._problems.sort(Comparator.comparingLong(p -> p._order));
+            return total;
+        } catch (InterruptedException excp) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("validation interrupted");
+        } catch (ExecutionException excp) {
+            throw new IllegalStateException("validation failed",
+                                            excp.getCause());
+        } finally {
+            threads.shutdownNow();
+        }
+    }
+
+    /** The findings of a validation. */
+    static final class Report {
+
+        /** Return the number of games replayed. */
+        int games() {
+            return _games;
+        }
+
+        /** Return the number of legal moves replayed. */
+        long moves() {
+            return _moves;
+        }
+
+        /** Return the number of illegal moves found. */
+        int illegalMoves() {
+            return _illegal;
+        }
+
+        /** Return the number of games whose recorded result differs from
+         *  the result of their moves. */
+        int mismatchedResults() {
+            return _mismatched;
+        }
+
+        /** Return true iff no problem was found. */
+        boolean ok() {
+            return _illegal == 0 && _mismatched == 0;
+        }
+
+        /** Return the descriptions of the problems found, in the order of
+         *  the files and of the games in them. */
+        List<String> problems() {
+            List<String> result = new ArrayList<>();
+            for (Problem problem : _problems) {
+                result.add(problem._text);
+            }
+            return result;
+        }
+
+        /** Print the report on OUT, listing at most MAX_LISTED
+         *  problems. */
+        void print(PrintStream out) {
+            double secs = _nanos / NANOS;
+            out.printf("%d games, %d moves in %.2f s (%.0f moves/sec)%n",
+                       _games, _moves, secs, secs == 0 ? 0 : _moves / secs);
+            out.printf("%d illegal moves, %d mismatched results%n",
+                       _illegal, _mismatched);
+            for (int k = 0; k < _problems.size() && k < MAX_LISTED; k += 1) {
+                out.println(_problems.get(k)._text);
+            }
+            if (_problems.size() > MAX_LISTED) {
+                out.printf("... and %d more%n",
+                           _problems.size() - MAX_LISTED);
+            }
+        }
+
+        /** Record a problem described by TEXT, found in file number FILE
+         *  at line or game number AT. */
+        private void problem(int file, long at, String text) {
+            _problems.add(new Problem(((long) file << Integer.SIZE) | at,
+                                      text));
+        }
+
+        /** Add the counts and problems of OTHER to mine. */
+        private void addAll(Report other) {
+            _games += other._games;
+            _moves += other._moves;
+            _illegal += other._illegal;
+            _mismatched += other._mismatched;
+            _problems.addAll(other._problems);
+        }
+
+        /** Numbers of games, illegal moves and mismatched results. */
+        private int _games, _illegal, _mismatched;
+        /** Number of moves replayed, and time taken, in nanoseconds. */
+        private long _moves, _nanos;
+        /** The problems found. */
+        private final List<Problem> _problems = new ArrayList<>();
+    }
+
+    /** A problem found, with its place in the order of the report. */
+    private static final class Problem {
+        /** A problem described by TEXT, reported in the position ORDER
+         *  relative to others. */
+        Problem(long order, String text) {
+            _order = order;
+            _text = text;
+        }
+
+        /** Position in the report. */
+        private final long _order;
+        /** Description. */
+        private final String _text;
+    }
+
+    /** Return true iff FILE starts as a GameArchive does. */
+    private static boolean isArchive(String file) throws IOException {
+        try (DataInputStream in =
+                 new DataInputStream(Files.newInputStream(Paths.get(file)))) {
+            return in.readInt() == GameArchive.MAGIC;
+        } catch (EOFException excp) {
+            return false;
+        }
+    }
+
+    /** Submit TASK to RESULTS, first waiting for a task to finish and
+     *  adding its report to TOTAL if enough are waiting. */
+    private void submit(CompletionService<Report> results, Report total,
+                        Callable<Report> task)
+        throws InterruptedException, ExecutionException {
+        if (_pending >= 2 * _threads) {
+            total.addAll(results.take().get());
+            _pending -= 1;
+        }
+        results.submit(task);
+        _pending += 1;
+    }
+
+    /** Read the log NAME, file number FILE, and submit its games to
+     *  RESULTS in batches, adding reports to TOTAL as for submit. */
+    private void submitLog(CompletionService<Report> results, Report total,
+                           int file, String name)
+        throws IOException, InterruptedException, ExecutionException {
+        try (BufferedReader in = Files.newBufferedReader(Paths.get(name))) {
+            List<String> batch = new ArrayList<>();
+            int first = 1, lineNum = 1;
+            for (String line = in.readLine(); line != null;
+                 line = in.readLine(), lineNum += 1) {
+                if (batch.size() >= BATCH_LINES
+                    && clean(line).equals("new")) {
+                    List<String> lines = batch;
+                    int start = first;
+                    submit(results, total,
+                           () -> replayLog(file, name, lines, start));
+                    batch = new ArrayList<>();
+                    first = lineNum;
+                }
+                batch.add(line);
+            }
+            List<String> lines = batch;
+            int start = first;
+            submit(results, total, () -> replayLog(file, name, lines, start));
+        }
+    }
+
+    /** Return LINE of a log without its comment, surrounding whitespace
+     *  or capitals. */
+    private static String clean(String line) {
+        int comment = line.indexOf('#');
+        if (comment >= 0) {
+            line = line.substring(0, comment);
+        }
+        return line.trim().toLowerCase();
+    }
+
+    /** Return a report of the replay of LINES, which start at line FIRST
+     *  of the log NAME, file number FILE, with a new game.  Commands
+     *  other than moves, "new" and "undo" are skipped, and illegal moves
+     *  are reported and skipped, as the game that wrote the log did. */
+    private static Report replayLog(int file, String name,
+                                    List<String> lines, int first) {
+        Report result = new Report();
+        Board board = new Board();
+        for (int k = 0; k < lines.size(); k += 1) {
+            String line = clean(lines.get(k));
+            if (line.equals("new")) {
+                if (board.numMoves() > 0) {
+                    result._games += 1;
+                    board = new Board();
+                }
+            } else if (line.equals("undo")) {
+                board.undo();
+            } else if (Move.isGrammaticalMove(line)) {
+                Move move = Move.mv(line);
+                if (move != null && board.isLegal(move)) {
+                    board.makeMove(move);
+                    result._moves += 1;
+                } else {
+                    result._illegal += 1;
+                    result.problem(file, first + k,
+                                   String.format("%s:%d: illegal move %s",
+                                                 name, first + k, line));
+                }
+            }
+        }
+        if (board.numMoves() > 0) {
+            result._games += 1;
+        }
+        return result;
+    }
+
+    /** Return a report of the replay of games FIRST .. END-1 of ARCHIVE,
+     *  the archive NAME, file number FILE.  A game is replayed up to its
+     *  first illegal move, if any; its recorded winner is checked if all
+     *  its moves are legal. */
+    private static Report replayArchive(int file, String name,
+                                        GameArchive archive,
+                                        int first, int end) {
+        Report result = new Report();
+        Board board = new Board();
+        for (int g = first; g < end; g += 1) {
+            GameArchive.Game game = archive.game(g);
+            board.init();
+            result._games += 1;
+            boolean legal = true;
+            for (int k = 0; k < game.plies() && legal; k += 1) {
+                Move move = Move.validMove(game.moveCode(k));
+                if (move != null && board.isLegal(move)) {
+                    board.makeMove(move);
+                    result._moves += 1;
+                } else {
+                    legal = false;
+                    result._illegal += 1;
+                    result.problem(file, g, String.format(
+                                       "%s: game %d: move %d is illegal",
+                                       name, g + 1, k + 1));
+                }
+            }
+            if (legal) {
+                Piece winner = board.legalMoves().hasNext() ? EMPTY
+                    : board.turn().opponent();
+                if (winner != game.winner()) {
+                    result._mismatched += 1;
+                    result.problem(file, g, String.format(
+                                       "%s: game %d: recorded winner %s,"
+                                       + " but moves give %s", name, g + 1,
+                                       name(game.winner()), name(winner)));
+                }
+            }
+        }
+        return result;
+    }
+
+    /** Return the name of the winner WINNER, or "none" if EMPTY. */
+    private static String name(Piece winner) {
+        return winner == EMPTY ? "none" : winner.toName();
+    }
+
+    /** Number of threads replaying games. */
+    private final int _threads;
+    /** Number of tasks submitted whose reports have not been added. */
+    private int _pending;
+}
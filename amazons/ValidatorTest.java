@@ -0,0 +1,66 @@
+package amazons;
+
+import org.junit.Test;
+
+import static amazons.Piece.*;
+import static org.junit.Assert.*;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/** JUnit tests of Validator.
+ *  @author Ethan Yim
+ */
+public class ValidatorTest {
+
+    /** Tests that a Validator replays logs and archives, finding illegal
+     *  moves and wrong results. */
+    @Test
+    public void testValidator() throws IOException {
+        Random random = new Random(UnitTest.RANDOM_SEED);
+        File archive = File.createTempFile("games", ".archive");
+        archive.deleteOnExit();
+        int moves = 0;
+        try (GameArchive.Writer writer =
+             new GameArchive.Writer(archive.getPath())) {
+            for (int g = 0; g < VALIDATOR_TEST_GAMES; g += 1) {
+                Board game = Match.opening(Board.SIZE * Board.SIZE, random);
+                writer.add(game.moves(), game.turn().opponent(), g, "w", "b");
+                moves += game.numMoves();
+            }
+            Board game = Match.opening(2, random);
+            writer.add(game.moves(), WHITE, 0, "w", "b");
+            List<Move> twice = new ArrayList<>(game.moves());
+            twice.add(twice.get(0));
+            writer.add(twice, EMPTY, 0, "w", "b");
+            moves += 2 * game.numMoves();
+        }
+        File log = File.createTempFile("games", ".log");
+        log.deleteOnExit();
+        try (PrintStream out = new PrintStream(log)) {
+            out.println("new\nd1-d4(d1)\ng10-g7(g10)\na1-a2(a3)\n# note");
+            out.println("seed 5\nNEW\ng1 g4 g1\nundo\nquit");
+        }
+
+        Validator.Report report = new Validator(2).validate(
+            List.of(log.getPath(), archive.getPath()));
+        assertEquals(VALIDATOR_TEST_GAMES + 4, report.games());
+        assertEquals(moves + 3, report.moves());
+        assertEquals(2, report.illegalMoves());
+        assertEquals(1, report.mismatchedResults());
+        assertFalse(report.ok());
+        List<String> problems = report.problems();
+        assertEquals(3, problems.size());
+        assertTrue(problems.get(0).endsWith(":4: illegal move a1-a2(a3)"));
+        assertTrue(problems.get(1).contains("game "
+                                            + (VALIDATOR_TEST_GAMES + 1)));
+        assertTrue(problems.get(2).contains("game "
+                                            + (VALIDATOR_TEST_GAMES + 2)));
+    }
+
+    /** Complete games in the archive checked by testValidator. */
+    static final int VALIDATOR_TEST_GAMES = 20;
+}
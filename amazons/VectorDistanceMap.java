@@ -0,0 +1,157 @@
+package amazons;
+
+import java.util.Arrays;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+import static amazons.Piece.*;
+
+/** A DistanceMap that relaxes all squares at once with the
+ *  jdk.incubator.vector API.  The board is laid out one byte per square
+ *  in a grid with a one-square wall all around it, so that a step in any
+ *  of the eight directions is a fixed offset into the array.  Each level
+ *  of the search slides the current frontier along every direction
+ *  through the empty squares, a whole vector of squares at a time, and
+ *  the squares first reached are given the level as their distance.
+ *  This file is compiled only when the JDK provides the incubator
+ *  module (see the Makefile); DistanceMap.create() falls back to the
+ *  scalar search otherwise.
+ *  @author Ethan Yim
+ */
+class VectorDistanceMap extends DistanceMap {
+
+    /** The preferred vector shape on this machine. */
+    private static final VectorSpecies<Byte> SPECIES =
+        ByteVector.SPECIES_PREFERRED;
+
+    /** Width (and height) of the walled grid. */
+    private static final int WIDTH = Board.SIZE + 2;
+
+    /** Number of cells in the walled grid. */
+    private static final int CELLS = WIDTH * WIDTH;
+
+    /** Unused cells before and after the grid, enough to cover a one-step
+     *  offset in any direction. */
+    private static final int MARGIN = WIDTH + 2;
+
+    /** Length of the padded arrays: the grid rounded up to a whole
+     *  number of vectors, plus a margin on each side. */
+    private static final int LENGTH =
+        MARGIN + SPECIES.loopBound(CELLS + SPECIES.length() - 1) + MARGIN;
+
+    /** Array offsets of one step in each direction, in the order used by
+     *  Square.queenMove. */
+    private static final int[] STEP = {
+        WIDTH, WIDTH + 1, 1, 1 - WIDTH, -WIDTH, -WIDTH - 1, -1, WIDTH - 1
+    };
+
+    /** Longest possible run of a queen move. */
+    private static final int MAX_RUN = Board.SIZE - 1;
+
+    /** A vectorized distance map.  Public so that DistanceMap.create can
+     *  instantiate it reflectively. */
+    public VectorDistanceMap() {
+    }
+
+    @Override
+    String backend() {
+        return "vector" + SPECIES.vectorBitSize();
+    }
+
+    @Override
+    void compute(Board board, Piece side, int[] dist) {
+        Arrays.fill(_empty, (byte) 0);
+        Arrays.fill(_frontier, (byte) 0);
+        Arrays.fill(_reached, (byte) 0);
+        Arrays.fill(_dist, (byte) UNREACHABLE);
+        for (int i = 0; i < SQUARES; i += 1) {
+            Square s = Square.sq(i);
+            int cell = cell(s);
+            Piece p = board.get(s);
+            if (p == EMPTY) {
+                _empty[cell] = 1;
+            } else if (p == side) {
+                _frontier[cell] = _reached[cell] = 1;
+                _dist[cell] = 0;
+            }
+        }
+
+        for (int level = 1; spread(); level += 1) {
+            ByteVector mark = ByteVector.broadcast(SPECIES, (byte) level);
+            for (int i = MARGIN; i < MARGIN + CELLS; i += SPECIES.length()) {
+                ByteVector fresh = ByteVector.fromArray(SPECIES, _next, i);
+                VectorMask<Byte> isNew = fresh.compare(VectorOperators.NE, 0);
+                ByteVector.fromArray(SPECIES, _dist, i)
+                    .blend(mark, isNew).intoArray(_dist, i);
+                ByteVector.fromArray(SPECIES, _reached, i)
+                    .or(fresh).intoArray(_reached, i);
+                fresh.intoArray(_frontier, i);
+            }
+        }
+
+        for (int i = 0; i < SQUARES; i += 1) {
+            dist[i] = _dist[cell(Square.sq(i))];
+        }
+    }
+
+    /** Slide the frontier along all eight directions through the empty
+     *  squares, leaving in _next the squares reached that had not been
+     *  reached before.  Return true iff there are any. */
+    private boolean spread() {
+        Arrays.fill(_next, (byte) 0);
+        for (int dir = 0; dir < STEP.length; dir += 1) {
+            int step = STEP[dir];
+            System.arraycopy(_frontier, 0, _ray, 0, LENGTH);
+            for (int run = 0; run < MAX_RUN; run += 1) {
+                boolean moved = false;
+                for (int i = MARGIN; i < MARGIN + CELLS;
+                     i += SPECIES.length()) {
+                    ByteVector ray =
+                        ByteVector.fromArray(SPECIES, _ray, i - step)
+                        .and(ByteVector.fromArray(SPECIES, _empty, i));
+                    ray.intoArray(_slid, i);
+                    ByteVector.fromArray(SPECIES, _next, i)
+                        .or(ray).intoArray(_next, i);
+                    moved |= ray.compare(VectorOperators.NE, 0).anyTrue();
+                }
+                if (!moved) {
+                    break;
+                }
+                byte[] tmp = _ray;
+                _ray = _slid;
+                _slid = tmp;
+            }
+        }
+        boolean any = false;
+        for (int i = MARGIN; i < MARGIN + CELLS; i += SPECIES.length()) {
+            ByteVector fresh = ByteVector.fromArray(SPECIES, _next, i)
+                .lanewise(VectorOperators.AND_NOT,
+                          ByteVector.fromArray(SPECIES, _reached, i));
+            fresh.intoArray(_next, i);
+            any |= fresh.compare(VectorOperators.NE, 0).anyTrue();
+        }
+        return any;
+    }
+
+    /** Return the index of S's cell in the padded arrays. */
+    private static int cell(Square s) {
+        return MARGIN + (s.row() + 1) * WIDTH + s.col() + 1;
+    }
+
+    /** 1 for empty squares, 0 for occupied squares, walls and padding. */
+    private final byte[] _empty = new byte[LENGTH];
+    /** 1 for the squares first reached at the previous level. */
+    private final byte[] _frontier = new byte[LENGTH];
+    /** 1 for all squares reached so far. */
+    private final byte[] _reached = new byte[LENGTH];
+    /** 1 for the squares first reached at the current level. */
+    private final byte[] _next = new byte[LENGTH];
+    /** Distances found so far, UNREACHABLE for the others. */
+    private final byte[] _dist = new byte[LENGTH];
+    /** The frontier slid some number of steps in one direction, and the
+     *  buffer it is slid one more step into. */
+    private byte[] _ray = new byte[LENGTH], _slid = new byte[LENGTH];
+}
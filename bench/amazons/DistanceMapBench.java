@@ -0,0 +1,77 @@
+package amazons;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static amazons.Piece.*;
+
+/** Compares the scalar and vectorized distance maps on a fixed set of
+ *  positions taken from random games.
+ *  @author Ethan Yim
+ */
+public class DistanceMapBench {
+
+    /** Number of positions in the corpus. */
+    private static final int POSITIONS = 200;
+    /** Seed for the random games the corpus comes from. */
+    private static final long SEED = 61;
+    /** Passes over the corpus used to warm up the JIT. */
+    private static final int WARMUP = 200;
+    /** Timed passes over the corpus. */
+    private static final int PASSES = 500;
+    /** Nanoseconds per second. */
+    private static final double NANOS = 1e9;
+
+    /** Time the scalar map and the one chosen by DistanceMap.create.
+     *  ARGS is ignored. */
+    public static void main(String... args) {
+        List<Board> corpus = corpus();
+        DistanceMap scalar = new DistanceMap();
+        DistanceMap best = DistanceMap.create();
+        for (DistanceMap map : new DistanceMap[] { scalar, best }) {
+            run(map, corpus, WARMUP);
+            long start = System.nanoTime();
+            long check = run(map, corpus, PASSES);
+            double secs = (System.nanoTime() - start) / NANOS;
+            System.out.printf("%-10s %12.0f maps/sec  (check %d)%n",
+                              map.backend(),
+                              2.0 * PASSES * corpus.size() / secs, check);
+        }
+    }
+
+    /** Compute both sides' distance maps for every board in CORPUS,
+     *  PASSES times, using MAP.  Return a checksum of the results. */
+    private static long run(DistanceMap map, List<Board> corpus,
+                            int passes) {
+        int[] dist = new int[DistanceMap.SQUARES];
+        long check = 0;
+        for (int k = 0; k < passes; k += 1) {
+            for (Board b : corpus) {
+                map.compute(b, WHITE, dist);
+                check += dist[k % dist.length];
+                map.compute(b, BLACK, dist);
+                check += dist[k % dist.length];
+            }
+        }
+        return check;
+    }
+
+    /** Return POSITIONS boards sampled from random games. */
+    private static List<Board> corpus() {
+        Random random = new Random(SEED);
+        List<Board> result = new ArrayList<>();
+        Board b = new Board();
+        while (result.size() < POSITIONS) {
+            List<Move> moves = new ArrayList<>();
+            b.legalMoves().forEachRemaining(moves::add);
+            if (moves.isEmpty()) {
+                b = new Board();
+                continue;
+            }
+            b.makeMove(moves.get(random.nextInt(moves.size())));
+            result.add(new Board(b));
+        }
+        return result;
+    }
+}
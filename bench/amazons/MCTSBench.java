@@ -0,0 +1,74 @@
+package amazons;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/** Measures how the MCTS player's iterations (each of which ends in a
+ *  playout) per second scale with the number of threads searching its
+ *  tree.  Each thread count searches the same positions, taken from a
+ *  random game, with a fresh player.
+ *  @author Ethan Yim
+ */
+public class MCTSBench {
+
+    /** The thread counts measured. */
+    private static final int[] THREADS = { 1, 2, 4, 8, 16 };
+    /** Time allowed per search, in milliseconds. */
+    private static final int MILLIS = 500;
+    /** Number of positions searched for each thread count. */
+    private static final int POSITIONS = 4;
+    /** Random moves made before the first position, and between
+     *  positions. */
+    private static final int SPACING = 10;
+    /** Seed for the random game the positions come from. */
+    private static final long SEED = 61;
+
+    /** Time searches with each thread count.  ARGS is ignored. */
+    public static void main(String... args) {
+        List<Board> positions = positions();
+        System.out.printf("%d processors%n",
+                          Runtime.getRuntime().availableProcessors());
+        run(THREADS[THREADS.length - 1], positions);
+        double base = 0;
+        for (int threads : THREADS) {
+            double rate = run(threads, positions);
+            if (base == 0) {
+                base = rate;
+            }
+            System.out.printf("%2d threads %10.0f playouts/sec  (x%.2f)%n",
+                              threads, rate, rate / base);
+        }
+    }
+
+    /** Search each of POSITIONS with THREADS threads, and return the
+     *  number of iterations made per second. */
+    private static double run(int threads, List<Board> positions) {
+        long iterations = 0;
+        for (Board b : positions) {
+            MCTSPlayer player =
+                new MCTSPlayer(MILLIS, MCTSPlayer.DEFAULT_PLAYOUT_DEPTH,
+                               threads);
+            player.findMove(b);
+            iterations += player.iterations();
+        }
+        return iterations * 1000.0 / (MILLIS * positions.size());
+    }
+
+    /** Return POSITIONS positions from a random game, SPACING moves
+     *  apart. */
+    private static List<Board> positions() {
+        Random random = new Random(SEED);
+        List<Board> result = new ArrayList<>();
+        Board b = new Board();
+        while (result.size() < POSITIONS) {
+            for (int k = 0; k < SPACING; k += 1) {
+                List<Move> moves = new ArrayList<>();
+                b.legalMoves().forEachRemaining(moves::add);
+                b.makeMove(moves.get(random.nextInt(moves.size())));
+            }
+            result.add(new Board(b));
+        }
+        return result;
+    }
+}
@@ -0,0 +1,89 @@
+package amazons;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/** The positions the benchmarks run on: the same few random games,
+ *  stopped in the opening, the middlegame or the endgame as the phase
+ *  parameter says.  The games are fixed by their seeds, so every run
+ *  measures the same positions.  Each benchmark thread has its own
+ *  copy, since some benchmarks change the boards (and restore them).
+ *  @author Ethan Yim
+ */
+@State(Scope.Thread)
+public class Corpus {
+
+    /** Number of positions in each phase. */
+    static final int POSITIONS = 8;
+    /** Seed for the first of the random games the positions come from. */
+    static final long SEED = 61;
+    /** Moves made before the positions of each phase. */
+    static final int OPENING_PLIES = 6, MIDDLEGAME_PLIES = 30,
+        ENDGAME_PLIES = 55;
+    /** Moves kept from each position for the makeMove benchmark. */
+    static final int MOVES_KEPT = 16;
+
+    /** The phase of the game: "opening", "middlegame" or "endgame". */
+    @Param({ "opening", "middlegame", "endgame" })
+    public String phase;
+
+    /** Build the positions for the phase. */
+    @Setup(Level.Trial)
+    public void setup() {
+        int plies;
+        switch (phase) {
+        case "opening":
+            plies = OPENING_PLIES;
+            break;
+        case "middlegame":
+            plies = MIDDLEGAME_PLIES;
+            break;
+        case "endgame":
+            plies = ENDGAME_PLIES;
+            break;
+        default:
+            throw new IllegalArgumentException("unknown phase: " + phase);
+        }
+        boards = new Board[POSITIONS];
+        moves = new Move[POSITIONS][];
+        for (int k = 0; k < POSITIONS; k += 1) {
+            boards[k] = position(new Random(SEED + k), plies);
+            List<Move> legal = new ArrayList<>();
+            boards[k].legalMoves().forEachRemaining(legal::add);
+            moves[k] = new Move[Math.min(MOVES_KEPT, legal.size())];
+            for (int m = 0; m < moves[k].length; m += 1) {
+                moves[k][m] = legal.get(m * legal.size() / moves[k].length);
+            }
+        }
+    }
+
+    /** Return the position after PLIES random moves chosen with RANDOM,
+     *  or the last one before that with a legal move. */
+    private static Board position(Random random, int plies) {
+        Board result = new Board();
+        List<Move> legal = new ArrayList<>();
+        for (int k = 0; k < plies; k += 1) {
+            legal.clear();
+            result.legalMoves().forEachRemaining(legal::add);
+            result.makeMove(legal.get(random.nextInt(legal.size())));
+            if (!result.legalMoves().hasNext()) {
+                result.retract();
+                break;
+            }
+        }
+        return result;
+    }
+
+    /** The positions. */
+    Board[] boards;
+    /** Some legal moves from each position, spread over its move
+     *  list. */
+    Move[][] moves;
+}
@@ -0,0 +1,79 @@
+package amazons;
+
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/** Benchmarks of move generation and of making, undoing and copying
+ *  positions.  Each operation covers every position of the Corpus.
+ *  @author Ethan Yim
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MoveGenBench {
+
+    /** Enumerate all legal moves of each position of CORPUS, passing
+     *  them to SINK. */
+    @Benchmark
+    public void legalMoves(Corpus corpus, Blackhole sink) {
+        for (Board board : corpus.boards) {
+            for (Iterator<Move> m = board.legalMoves(); m.hasNext(); ) {
+                sink.consume(m.next());
+            }
+        }
+    }
+
+    /** Enumerate the squares reachable from each queen of the side to
+     *  move in each position of CORPUS, passing them to SINK. */
+    @Benchmark
+    public void reachableFrom(Corpus corpus, Blackhole sink) {
+        for (Board board : corpus.boards) {
+            for (int i = 0; i < Board.SIZE * Board.SIZE; i += 1) {
+                Square queen = Square.sq(i);
+                if (board.get(queen) != board.turn()) {
+                    continue;
+                }
+                for (Iterator<Square> s = board.reachableFrom(queen, null);
+                     s.hasNext(); ) {
+                    sink.consume(s.next());
+                }
+            }
+        }
+    }
+
+    /** Make and take back the chosen moves of each position of CORPUS,
+     *  and return a checksum.  Moves are taken back with retract, as in
+     *  the searches, since undo takes back a move of each side. */
+    @Benchmark
+    public int makeMoveRetract(Corpus corpus) {
+        int check = 0;
+        for (int k = 0; k < corpus.boards.length; k += 1) {
+            Board board = corpus.boards[k];
+            for (Move move : corpus.moves[k]) {
+                board.makeMove(move);
+                check += board.numMoves();
+                board.retract();
+            }
+        }
+        return check;
+    }
+
+    /** Copy each position of CORPUS, passing the copies to SINK. */
+    @Benchmark
+    public void copy(Corpus corpus, Blackhole sink) {
+        for (Board board : corpus.boards) {
+            sink.consume(new Board(board));
+        }
+    }
+}
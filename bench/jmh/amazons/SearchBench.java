@@ -0,0 +1,75 @@
+package amazons;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import static amazons.Piece.*;
+
+/** Benchmarks of the AI's static evaluation and of its search to a
+ *  fixed depth.  Each operation covers every position of the Corpus.
+ *  @author Ethan Yim
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SearchBench {
+
+    /** Depth of the searches. */
+    @Param({ "1", "2" })
+    public int depth;
+
+    /** Make an AI for each side. */
+    @Setup(Level.Trial)
+    public void setup() {
+        Controller controller =
+            new Controller(new NullView(), null, new NullReporter(),
+                           new AI(), new AI());
+        _white = (AI) new AI().create(WHITE, controller);
+        _black = (AI) new AI().create(BLACK, controller);
+    }
+
+    /** Return the sum of the AI's static scores of the positions of
+     *  CORPUS. */
+    @Benchmark
+    public int staticScore(Corpus corpus) {
+        int sum = 0;
+        for (Board board : corpus.boards) {
+            sum += player(board).staticScore(board);
+        }
+        return sum;
+    }
+
+    /** Search each position of CORPUS to the depth, and return a
+     *  checksum of the moves found. */
+    @Benchmark
+    public int findMove(Corpus corpus) {
+        int check = 0;
+        for (Board board : corpus.boards) {
+            check += player(board).searchMove(board, depth).code();
+        }
+        return check;
+    }
+
+    /** Return the AI for the side to move on BOARD. */
+    private AI player(Board board) {
+        return board.turn() == WHITE ? _white : _black;
+    }
+
+    /** The AIs playing each side. */
+    private AI _white, _black;
+}